@@ -12,10 +12,27 @@
 #   public *;
 #}
 
-# Uncomment this to preserve the line number information for
-# debugging stack traces.
-#-keepattributes SourceFile,LineNumberTable
+# Номера строк в стеках из журнала и отчётов о падениях; имена файлов скрыты
+-keepattributes SourceFile,LineNumberTable
+-renamesourcefileattribute SourceFile
 
-# If you keep the line number information, uncomment this to
-# hide the original source file name.
-#-renamesourcefileattribute SourceFile
\ No newline at end of file
+# WebRTC: aar собран без consumer-правил, а нативная часть находит классы, методы и поля
+# по именам через JNI (FindClass, GetMethodID). Пакет сохраняется целиком, без переименования
+-keep class org.webrtc.** { *; }
+-keepattributes *Annotation*,InnerClasses,EnclosingMethod,Signature
+-dontwarn org.webrtc.**
+
+# Нативные методы и методы, которые вызывает C++ (в том числе в классах приложения)
+-keepclasseswithmembernames,includedescriptorclasses class * {
+    native <methods>;
+}
+-keepclassmembers class * {
+    @org.webrtc.CalledByNative *;
+    @org.webrtc.CalledByNativeUnchecked *;
+}
+
+# Реализации наблюдателей WebRTC в приложении (PeerConnection.Observer, SdpObserver,
+# AudioTrackSink и т. п.) вызываются из нативного кода по именам методов интерфейса
+-keepclassmembers class com.example.mobileapp.** implements org.webrtc.** {
+    public <methods>;
+}
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.example.mobileapp;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.view.Choreographer;
+import android.widget.Button;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Быстрый путь команд заглушения: состояние звука меняется прямо в потоке сокета
+// (аудиотрек и AudioManager), а кнопка обновляется не чаще одного раза за кадр
+public class AudioOutputController {
+    private static final int LATENCY_HISTORY = 256;
+
+    private final AudioManager audioManager;
+    private final WebRTCClient webRTCClient;
+    private final Choreographer choreographer;
+    private final Button audioOutputButton;
+
+    // Последнее применённое состояние звука, чтобы не дёргать AudioManager зря
+    private final Object lock = new Object();
+    private boolean audioApplied;
+    private boolean hasApplied;
+
+    // Состояние, которое нужно отрисовать в следующем кадре
+    private volatile boolean uiButtonEnabled = true;
+    private volatile boolean uiAudioOn = true;
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> renderUi();
+
+    // Задержка от прихода команды до её применения, мкс
+    private final SampleRing latencyUs = new SampleRing(LATENCY_HISTORY);
+
+    // Создаётся в главном потоке (нужен его Choreographer)
+    public AudioOutputController(Context context, WebRTCClient webRTCClient, Button audioOutputButton) {
+        this.audioManager = (AudioManager) context.getApplicationContext().getSystemService(Context.AUDIO_SERVICE);
+        this.webRTCClient = webRTCClient;
+        this.audioOutputButton = audioOutputButton;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    // Можно вызывать из любого потока. arrivalNanos — System.nanoTime() прихода команды
+    public void apply(boolean buttonEnabled, boolean audioOn, long arrivalNanos) {
+        synchronized (lock) {
+            webRTCClient.setAudioEnabled(audioOn, arrivalNanos); // без звука приём со временем приостанавливается
+            if (!hasApplied || audioApplied != audioOn) {
+                if (audioManager != null) {
+                    audioManager.adjustStreamVolume(
+                            AudioManager.STREAM_MUSIC,
+                            audioOn ? AudioManager.ADJUST_UNMUTE : AudioManager.ADJUST_MUTE,
+                            0
+                    );
+                }
+                audioApplied = audioOn;
+                hasApplied = true;
+            }
+            latencyUs.add(System.currentTimeMillis(), (System.nanoTime() - arrivalNanos) / 1000.0);
+        }
+
+        uiButtonEnabled = buttonEnabled;
+        uiAudioOn = audioOn;
+        if (frameScheduled.compareAndSet(false, true)) {
+            choreographer.postFrameCallback(frameCallback);
+        }
+    }
+
+    private void renderUi() {
+        frameScheduled.set(false);
+        boolean audioOn = uiAudioOn;
+        audioOutputButton.setEnabled(uiButtonEnabled);
+        // Обновляем визуальное состояние кнопки
+        audioOutputButton.setBackgroundResource(audioOn ? R.drawable.rounded_button_green : R.drawable.rounded_button_red);
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        double[] values;
+        int n;
+        synchronized (lock) {
+            n = latencyUs.size();
+            values = new double[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = latencyUs.get(i);
+            }
+        }
+        if (n == 0) {
+            writer.println(prefix + "Mute command latency: -");
+            return;
+        }
+        Arrays.sort(values);
+        writer.println(prefix + "Mute command latency (us, last " + n + "):"
+                + " p50=" + (long) values[(n - 1) / 2]
+                + " p99=" + (long) values[(int) Math.ceil(0.99 * n) - 1]
+                + " max=" + (long) values[n - 1]);
+    }
+}
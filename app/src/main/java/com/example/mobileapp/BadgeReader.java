@@ -0,0 +1,167 @@
+package com.example.mobileapp;
+
+import android.app.Activity;
+import android.nfc.NfcAdapter;
+import android.nfc.Tag;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Чтение пропусков в reader mode: только NFC-A, без поиска NDEF и системного звука.
+// Колбэк NFC приходит в фоновом потоке стека; UID берётся из антиколлизии, без обмена с меткой.
+// Повторные срабатывания того же пропуска в пределах окна отбрасываются, остальные касания
+// через очередь уходят в отдельный поток логики подключения
+public class BadgeReader implements NfcAdapter.ReaderCallback {
+    private static final String TAG = "NFC";
+    private static final int READER_FLAGS = NfcAdapter.FLAG_READER_NFC_A
+            | NfcAdapter.FLAG_READER_SKIP_NDEF_CHECK
+            | NfcAdapter.FLAG_READER_NO_PLATFORM_SOUNDS;
+    // Повтор того же UID в пределах окна — то же касание (пропуск лежит на телефоне)
+    private static final long DEBOUNCE_MS = 2000;
+    // Реже проверяем присутствие метки: меньше обращений к контроллеру, пока пропуск приложен
+    private static final int PRESENCE_CHECK_DELAY_MS = 1000;
+    private static final int QUEUE_CAPACITY = 8;
+    private static final int LATENCY_HISTORY = 64;
+
+    public interface Listener {
+        // Вызывается в потоке "badge-join", по одному касанию за раз
+        void onBadgeTapped(Tap tap);
+    }
+
+    public static final class Tap {
+        public final byte[] uid;
+        public final String uidHex;
+        // SystemClock.elapsedRealtimeNanos() обнаружения метки
+        public final long discoveredAtNanos;
+
+        Tap(byte[] uid, String uidHex, long discoveredAtNanos) {
+            this.uid = uid;
+            this.uidHex = uidHex;
+            this.discoveredAtNanos = discoveredAtNanos;
+        }
+    }
+
+    private final NfcAdapter nfcAdapter;
+    private final Listener listener;
+    private final BlockingQueue<Tap> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private final Object lock = new Object();
+    private String lastUidHex;
+    private long lastSeenMs;
+    private int acceptedCount;
+    private int debouncedCount;
+    private int droppedCount;
+    private final SampleRing uidSentUs = new SampleRing(LATENCY_HISTORY);
+
+    public BadgeReader(NfcAdapter nfcAdapter, Listener listener) {
+        this.nfcAdapter = nfcAdapter;
+        this.listener = listener;
+        Thread worker = new Thread(this::drain, "badge-join");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Вызывать из onResume: reader mode действует, только пока Activity на переднем плане
+    public void enable(Activity activity) {
+        Bundle extras = new Bundle();
+        extras.putInt(NfcAdapter.EXTRA_READER_PRESENCE_CHECK_DELAY, PRESENCE_CHECK_DELAY_MS);
+        nfcAdapter.enableReaderMode(activity, this, READER_FLAGS, extras);
+    }
+
+    public void disable(Activity activity) {
+        nfcAdapter.disableReaderMode(activity);
+    }
+
+    @Override
+    public void onTagDiscovered(Tag tag) {
+        long discoveredAt = SystemClock.elapsedRealtimeNanos();
+        byte[] id = tag.getId();
+        if (id == null || id.length == 0) {
+            Log.w(TAG, "Метка без UID");
+            return;
+        }
+        accept(id, discoveredAt);
+    }
+
+    // Касание без метки для сценария macrobenchmark: тот же путь, что и у настоящего пропуска
+    public void simulateTap(byte[] uid) {
+        accept(uid, SystemClock.elapsedRealtimeNanos());
+    }
+
+    private void accept(byte[] id, long discoveredAt) {
+        String uidHex = UidCodec.toHex(id);
+        long nowMs = SystemClock.elapsedRealtime();
+        synchronized (lock) {
+            if (uidHex.equals(lastUidHex) && nowMs - lastSeenMs < DEBOUNCE_MS) {
+                lastSeenMs = nowMs; // пока пропуск приложен, окно продлевается
+                debouncedCount++;
+                return;
+            }
+            lastUidHex = uidHex;
+            lastSeenMs = nowMs;
+        }
+        if (!queue.offer(new Tap(id, uidHex, discoveredAt))) {
+            synchronized (lock) {
+                droppedCount++;
+            }
+            Log.w(TAG, "Очередь касаний переполнена, касание отброшено: " + uidHex);
+            return;
+        }
+        synchronized (lock) {
+            acceptedCount++;
+        }
+    }
+
+    // UID ушёл на сервер: время от обнаружения метки до отправки
+    public void onUidSent(Tap tap) {
+        long latencyUs = (SystemClock.elapsedRealtimeNanos() - tap.discoveredAtNanos) / 1000;
+        synchronized (lock) {
+            uidSentUs.add(SystemClock.elapsedRealtime(), latencyUs);
+        }
+        EventJournal.get().record(EventJournal.Event.UID_SENT, latencyUs);
+    }
+
+    private void drain() {
+        while (true) {
+            Tap tap;
+            try {
+                tap = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                listener.onBadgeTapped(tap);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Ошибка обработки касания", e);
+            }
+        }
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        double[] values;
+        int n;
+        synchronized (lock) {
+            writer.println(prefix + "Badge taps: accepted=" + acceptedCount
+                    + " debounced=" + debouncedCount + " dropped=" + droppedCount);
+            n = uidSentUs.size();
+            values = new double[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = uidSentUs.get(i);
+            }
+        }
+        if (n == 0) {
+            writer.println(prefix + "Tap to UID sent: -");
+            return;
+        }
+        Arrays.sort(values);
+        writer.println(prefix + "Tap to UID sent (us, last " + n + "):"
+                + " p50=" + (long) values[(n - 1) / 2]
+                + " p99=" + (long) values[(int) Math.ceil(0.99 * n) - 1]
+                + " max=" + (long) values[n - 1]);
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.mobileapp;
+
+import android.util.Log;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+
+// Управляющий WebSocket-канал к серверу (:8080).
+// При подключении предлагает оба подпротокола, текстовый первым; бинарный включается,
+// только если сервер выбрал его явно.
+// Сообщения разбираются в переиспользуемый ControlMessage и передаются слушателю в потоке сокета.
+// Канал сам следит за живостью (ping/pong) и переподключается с экспоненциальной задержкой,
+// после чего повторно отправляет последний UID, чтобы сервер восстановил номер устройства
+public class ControlChannel implements WebRTCClient.MediaPauseSignal {
+    private static final String TAG = "WebSocket";
+    // Без ответа на ping за этот интервал OkHttp считает соединение разорванным
+    private static final long PING_INTERVAL_MS = 5000;
+    private static final long RECONNECT_BASE_MS = 500;
+    private static final long RECONNECT_MAX_MS = 30_000;
+
+    // Клиент с ping поверх общего транспорта (пул соединений и диспетчер общие)
+    private static final OkHttpClient socketClient = HttpTransport.get().client().newBuilder()
+            .pingInterval(PING_INTERVAL_MS, TimeUnit.MILLISECONDS)
+            .build();
+
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "control-reconnect");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public interface Listener {
+        void onConnected(boolean binary);
+
+        // Вызывается в потоке чтения сокета; message переиспользуется после возврата
+        void onControlMessage(ControlMessage message);
+
+        void onDisconnected(boolean failure);
+
+        // Соединение потеряно, следующая попытка через delayMs
+        void onReconnecting(int attempt, long delayMs);
+    }
+
+    private final String url;
+    private final Listener listener;
+    // Принадлежит потоку чтения сокета
+    private final ControlMessage message = new ControlMessage();
+
+    private volatile WebSocket webSocket;
+    private volatile boolean binary;
+    // Текстовый протокол: после отправки UID первое число — номер устройства
+    private volatile boolean awaitingDeviceNumber;
+    private int lastSeq = -1;
+    private int sendSeq;
+
+    // Состояние для восстановления сессии после переподключения
+    private volatile boolean stopped = true;
+    private volatile byte[] lastUid;
+    private volatile String lastUidHex;
+    private int reconnectAttempt;
+    private int reconnectCount;
+    private ScheduledFuture<?> reconnectFuture;
+
+    public ControlChannel(String ip, Listener listener) {
+        this.url = HttpTransport.controlUrl(ip);
+        this.listener = listener;
+    }
+
+    public boolean isOpen() {
+        return webSocket != null;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public synchronized void connect() {
+        stopped = false;
+        if (webSocket != null) {
+            Log.d(TAG, "Уже подключено");
+            return;
+        }
+        openSocket();
+    }
+
+    private void openSocket() {
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Sec-WebSocket-Protocol", ControlProtocol.SUBPROTOCOL_OFFER)
+                .build();
+        webSocket = socketClient.newWebSocket(request, new SocketListener());
+    }
+
+    public synchronized void close() {
+        stopped = true;
+        if (reconnectFuture != null) {
+            reconnectFuture.cancel(false);
+            reconnectFuture = null;
+        }
+        lastUid = null;
+        lastUidHex = null;
+        WebSocket socket = webSocket;
+        webSocket = null;
+        if (socket != null) {
+            socket.close(1000, "Manual disconnect");
+        }
+    }
+
+    // Отправляет UID пропуска; ответом будет номер устройства и ФИО
+    public boolean sendUid(byte[] uid, String uidHex) {
+        lastUid = uid;
+        lastUidHex = uidHex;
+        WebSocket socket = webSocket;
+        if (socket == null) {
+            return false;
+        }
+        awaitingDeviceNumber = true;
+        if (binary) {
+            return socket.send(ControlProtocol.encodeUid(uid, nextSeq()));
+        }
+        return socket.send(ControlProtocol.encodeUidText(uidHex));
+    }
+
+    // Просит сервер остановить или возобновить пересылку медиа ресурса WHEP. Только в бинарном протоколе
+    @Override
+    public boolean sendMediaPause(String resource, boolean paused) {
+        WebSocket socket = webSocket;
+        if (socket == null || !binary) {
+            return false;
+        }
+        return socket.send(ControlProtocol.encodeMediaPause(
+                paused ? ControlProtocol.OP_MEDIA_PAUSE : ControlProtocol.OP_MEDIA_RESUME, nextSeq(), resource));
+    }
+
+    // Пакет телеметрии. Только в бинарном протоколе; текстовый сервер о нём не знает
+    public boolean sendTelemetry(TelemetryBatch batch, long nowMs) {
+        WebSocket socket = webSocket;
+        if (socket == null || !binary) {
+            return false;
+        }
+        return socket.send(ControlProtocol.encodeTelemetry(nextSeq(), batch, nowMs));
+    }
+
+    // Байты, ещё не отданные сокету; -1 — соединения нет
+    public long queuedBytes() {
+        WebSocket socket = webSocket;
+        return socket != null ? socket.queueSize() : -1;
+    }
+
+    public synchronized int getReconnectCount() {
+        return reconnectCount;
+    }
+
+    // Задержка с полным случайным разбросом: после перезапуска сервера устройства
+    // переподключаются вразнобой, а не все одновременно
+    private synchronized void scheduleReconnect(WebSocket failed) {
+        if (webSocket != failed) {
+            return; // уже переподключились или закрыли вручную
+        }
+        webSocket = null;
+        if (stopped) {
+            return;
+        }
+        long cap = Math.min(RECONNECT_MAX_MS, RECONNECT_BASE_MS << Math.min(reconnectAttempt, 16));
+        long delay = ThreadLocalRandom.current().nextLong(RECONNECT_BASE_MS / 2, cap + 1);
+        reconnectAttempt++;
+        Log.d(TAG, "Переподключение #" + reconnectAttempt + " через " + delay + " мс");
+        listener.onReconnecting(reconnectAttempt, delay);
+        reconnectFuture = scheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void reconnect() {
+        reconnectFuture = null;
+        if (stopped || webSocket != null) {
+            return;
+        }
+        openSocket();
+    }
+
+    private synchronized void onOpened(WebSocket socket) {
+        if (reconnectAttempt > 0) {
+            reconnectCount++;
+        }
+        reconnectAttempt = 0;
+        // Восстановление сессии: сервер заново присвоит номер устройства и пришлёт ФИО
+        byte[] uid = lastUid;
+        if (uid != null) {
+            Log.d(TAG, "Повторная отправка UID после переподключения");
+            awaitingDeviceNumber = true;
+            if (binary) {
+                socket.send(ControlProtocol.encodeUid(uid, nextSeq()));
+            } else {
+                socket.send(ControlProtocol.encodeUidText(lastUidHex));
+            }
+        }
+    }
+
+    private synchronized int nextSeq() {
+        sendSeq = (sendSeq + 1) & 0xFFFF;
+        return sendSeq;
+    }
+
+    private void dispatch() {
+        // В текстовом протоколе ожидание номера заканчивается только с приходом ФИО
+        if (message.opcode == ControlProtocol.OP_IDENTITY
+                || (binary && message.opcode == ControlProtocol.OP_ASSIGN_DEVICE)) {
+            awaitingDeviceNumber = false;
+        }
+        listener.onControlMessage(message);
+    }
+
+    private class SocketListener extends WebSocketListener {
+        @Override
+        public void onOpen(WebSocket socket, Response response) {
+            binary = ControlProtocol.isBinarySelected(response.header("Sec-WebSocket-Protocol"));
+            lastSeq = -1;
+            Log.d(TAG, "Соединение открыто, протокол: " + (binary ? "бинарный" : "текстовый"));
+            onOpened(socket);
+            listener.onConnected(binary);
+        }
+
+        @Override
+        public void onMessage(WebSocket socket, ByteString bytes) {
+            long receivedAt = System.nanoTime();
+            if (!ControlProtocol.decode(bytes, message)) {
+                EventJournal.get().record(EventJournal.Event.CONTROL_MALFORMED, bytes.size());
+                Log.w(TAG, "Некорректный кадр, " + bytes.size() + " байт");
+                return;
+            }
+            // Повторы и запоздавшие кадры отбрасываются
+            if (lastSeq >= 0 && !ControlProtocol.isNewer(message.seq, lastSeq)) {
+                EventJournal.get().record(EventJournal.Event.CONTROL_STALE, message.seq, lastSeq);
+                return;
+            }
+            lastSeq = message.seq;
+            EventJournal.get().record(EventJournal.Event.CONTROL_FRAME, message.opcode, message.seq);
+            message.receivedAtNanos = receivedAt;
+            dispatch();
+        }
+
+        @Override
+        public void onMessage(WebSocket socket, String text) {
+            long receivedAt = System.nanoTime();
+            if (!ControlProtocol.decodeText(text, awaitingDeviceNumber, message)) {
+                Log.w(TAG, "Неизвестное сообщение: " + text);
+                return;
+            }
+            EventJournal.get().record(EventJournal.Event.CONTROL_TEXT, message.opcode, text.length());
+            message.receivedAtNanos = receivedAt;
+            dispatch();
+        }
+
+        @Override
+        public void onFailure(WebSocket socket, Throwable t, Response response) {
+            Log.e(TAG, "Ошибка соединения", t);
+            if (response != null) {
+                Log.e(TAG, "Ответ сервера: " + response.code() + " " + response.message());
+            }
+            listener.onDisconnected(true);
+            scheduleReconnect(socket);
+        }
+
+        @Override
+        public void onClosing(WebSocket socket, int code, String reason) {
+            Log.d(TAG, "Соединение закрывается: " + reason);
+            socket.close(1000, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket socket, int code, String reason) {
+            Log.d(TAG, "Соединение закрыто: " + reason);
+            listener.onDisconnected(false);
+            // Сервер закрыл соединение сам (например, при перезапуске)
+            scheduleReconnect(socket);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.mobileapp;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Общий транспорт приложения: один настроенный OkHttpClient на весь процесс
+// (WHEP-запросы и управляющий WebSocket используют общий пул соединений и диспетчер)
+public final class HttpTransport {
+    private static final String TAG = "HttpTransport";
+    public static final int WHEP_PORT = 8889;
+    public static final int CONTROL_PORT = 8080;
+
+    private static volatile HttpTransport instance;
+
+    private final ConnectionPool connectionPool;
+    private final OkHttpClient client;
+    private volatile String warmedIp;
+
+    // Метрики соединений
+    private final AtomicLong connectCount = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong connectNanosTotal = new AtomicLong();
+    private final AtomicLong connectNanosMax = new AtomicLong();
+    private final AtomicLong connectionsAcquired = new AtomicLong();
+
+    public static HttpTransport get() {
+        HttpTransport local = instance;
+        if (local == null) {
+            synchronized (HttpTransport.class) {
+                local = instance;
+                if (local == null) {
+                    local = new HttpTransport();
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    private HttpTransport() {
+        // Держим соединения к выбранному серверу открытыми между подключениями
+        connectionPool = new ConnectionPool(8, 5, TimeUnit.MINUTES);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(8);
+
+        client = new OkHttpClient.Builder()
+                .connectionPool(connectionPool)
+                .dispatcher(dispatcher)
+                .protocols(Collections.singletonList(Protocol.HTTP_1_1)) // сервер работает по открытому HTTP
+                .connectTimeout(3, TimeUnit.SECONDS)
+                .readTimeout(10, TimeUnit.SECONDS)
+                .writeTimeout(10, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(true)
+                .eventListenerFactory(call -> new MetricsListener())
+                .build();
+    }
+
+    public OkHttpClient client() {
+        return client;
+    }
+
+    public static String whepBaseUrl(String ip) {
+        return "http://" + ip + ":" + WHEP_PORT;
+    }
+
+    public static String controlUrl(String ip) {
+        return "ws://" + ip + ":" + CONTROL_PORT;
+    }
+
+    // Заранее открывает соединения к WHEP (:8889) и WebSocket (:8080) выбранного сервера,
+    // чтобы первое подключение не тратило время на установку TCP
+    public void preconnect(String ip) {
+        if (ip == null || ip.equals(warmedIp)) {
+            return;
+        }
+        warmedIp = ip;
+        warmUp("http://" + ip + ":" + WHEP_PORT + "/");
+        warmUp("http://" + ip + ":" + CONTROL_PORT + "/");
+    }
+
+    private void warmUp(String url) {
+        Request request = new Request.Builder().url(url).head().build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.w(TAG, "Не удалось прогреть соединение " + url + ": " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // Тело не нужно: закрываем ответ, соединение возвращается в пул
+                response.close();
+            }
+        });
+    }
+
+    public String metricsSummary() {
+        long connects = connectCount.get();
+        long acquired = connectionsAcquired.get();
+        long avgMs = connects == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(connectNanosTotal.get() / connects);
+        return "pool: total=" + connectionPool.connectionCount()
+                + " idle=" + connectionPool.idleConnectionCount()
+                + " | connects=" + connects
+                + " failed=" + connectFailures.get()
+                + " reused=" + Math.max(0, acquired - connects)
+                + " | connect avg=" + avgMs + "ms"
+                + " max=" + TimeUnit.NANOSECONDS.toMillis(connectNanosMax.get()) + "ms";
+    }
+
+    // Считает время установки TCP и повторное использование соединений из пула
+    private class MetricsListener extends EventListener {
+        private long connectStartNanos;
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            long elapsed = System.nanoTime() - connectStartNanos;
+            connectCount.incrementAndGet();
+            connectNanosTotal.addAndGet(elapsed);
+            long max;
+            do {
+                max = connectNanosMax.get();
+            } while (elapsed > max && !connectNanosMax.compareAndSet(max, elapsed));
+        }
+
+        @Override
+        public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                                  Protocol protocol, IOException ioe) {
+            connectFailures.incrementAndGet();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            connectionsAcquired.incrementAndGet();
+        }
+    }
+}
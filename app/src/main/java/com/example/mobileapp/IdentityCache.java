@@ -0,0 +1,205 @@
+package com.example.mobileapp;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Кэш ФИО по UID пропуска: ФИО показывается сразу при касании, сервер подтверждает его позже.
+// В памяти — LRU на LinkedHashMap, на диске — компактный бинарный файл:
+//   int32 MAGIC, uint16 число записей, далее для каждой записи:
+//   uint8 длина UID, байты UID, int64 время подтверждения (мс), ФИО в modified UTF-8 (writeUTF)
+// Записи старше TTL не отдаются и не сохраняются
+public final class IdentityCache {
+    private static final String TAG = "NFC";
+    private static final int MAGIC = 0x49444331; // "IDC1"
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final long DEFAULT_TTL_MS = TimeUnit.DAYS.toMillis(30);
+
+    private static final class Entry {
+        final byte[] uid;
+        final String fio;
+        final long confirmedAtMs;
+
+        Entry(byte[] uid, String fio, long confirmedAtMs) {
+            this.uid = uid;
+            this.fio = fio;
+            this.confirmedAtMs = confirmedAtMs;
+        }
+    }
+
+    // Файл пишется в отдельном потоке, чтобы не задерживать обработку касания и сокет
+    private static final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "identity-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File file;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entry> entries;
+    private boolean loaded;
+
+    public IdentityCache(File file, int capacity, long ttlMs) {
+        this.file = file;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    // Загружает файл заранее, чтобы первое касание не ждало диска
+    public void preload() {
+        io.execute(this::ensureLoaded);
+    }
+
+    // ФИО из кэша или null, если пропуск не встречался или запись устарела
+    public String lookup(String uidHex) {
+        return lookup(uidHex, System.currentTimeMillis());
+    }
+
+    synchronized String lookup(String uidHex, long nowMs) {
+        ensureLoaded();
+        Entry entry = entries.get(uidHex);
+        if (entry == null) {
+            return null;
+        }
+        if (isExpired(entry, nowMs)) {
+            entries.remove(uidHex);
+            return null;
+        }
+        return entry.fio;
+    }
+
+    // Сервер подтвердил ФИО. Файл перезаписывается только если что-то изменилось
+    public void store(byte[] uid, String uidHex, String fio) {
+        store(uid, uidHex, fio, System.currentTimeMillis());
+    }
+
+    synchronized void store(byte[] uid, String uidHex, String fio, long nowMs) {
+        ensureLoaded();
+        Entry previous = entries.get(uidHex);
+        entries.put(uidHex, new Entry(uid.clone(), fio, nowMs));
+        if (previous == null || !previous.fio.equals(fio) || nowMs - previous.confirmedAtMs > ttlMs / 2) {
+            scheduleSave();
+        }
+    }
+
+    // Сервер не знает пропуск: запись больше не показываем
+    public synchronized void invalidate(String uidHex) {
+        ensureLoaded();
+        if (entries.remove(uidHex) != null) {
+            scheduleSave();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private boolean isExpired(Entry entry, long nowMs) {
+        long age = nowMs - entry.confirmedAtMs;
+        return age < 0 || age > ttlMs;
+    }
+
+    private synchronized void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            read(in, System.currentTimeMillis());
+            Log.d(TAG, "Кэш ФИО загружен: " + entries.size());
+        } catch (IOException e) {
+            Log.w(TAG, "Кэш ФИО повреждён, начинаем заново: " + e.getMessage());
+            entries.clear();
+        }
+    }
+
+    private void scheduleSave() {
+        if (file == null) {
+            return;
+        }
+        io.execute(this::save);
+    }
+
+    // Пишем во временный файл и переименовываем: при сбое остаётся прежняя версия
+    private void save() {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                synchronized (this) {
+                    write(out, System.currentTimeMillis());
+                }
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("не удалось переименовать " + tmp);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Не удалось сохранить кэш ФИО: " + e.getMessage());
+            tmp.delete();
+        }
+    }
+
+    // Сериализация без устаревших записей, от старых к новым (порядок LRU восстанавливается при чтении)
+    synchronized void write(OutputStream out, long nowMs) throws IOException {
+        List<Entry> live = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            if (!isExpired(entry, nowMs)) {
+                live.add(entry);
+            }
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(live.size());
+        for (Entry entry : live) {
+            data.writeByte(entry.uid.length);
+            data.write(entry.uid);
+            data.writeLong(entry.confirmedAtMs);
+            data.writeUTF(entry.fio);
+        }
+        data.flush();
+    }
+
+    synchronized void read(InputStream in, long nowMs) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("неизвестный формат");
+        }
+        int count = data.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            byte[] uid = new byte[data.readUnsignedByte()];
+            data.readFully(uid);
+            long confirmedAtMs = data.readLong();
+            entries.put(UidCodec.toHex(uid), new Entry(uid, data.readUTF(), confirmedAtMs));
+        }
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (isExpired(it.next(), nowMs)) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.mobileapp;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+// Трассировка подключения: от касания пропуска до первого принятого RTP-пакета.
+// Время фаз берётся по монотонным часам и хранится по сессиям для перцентилей.
+// Каждая фаза ещё и асинхронная секция systrace "Join:<фаза>" от касания (API 29+),
+// по ним считает TraceSectionMetric в :benchmark
+public final class JoinTracer {
+    private static final String TAG = "JoinTracer";
+    // Сколько последних подключений хранится для статистики
+    private static final int HISTORY_SIZE = 64;
+
+    public enum Phase {
+        TAG_DISCOVERED,
+        UID_SENT,
+        DEVICE_NUMBER_RECEIVED,
+        OFFER_CREATED,
+        WHEP_RESPONSE,
+        ICE_CONNECTED,
+        DTLS_CONNECTED,
+        FIRST_RTP
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final String[] SECTIONS = new String[PHASES.length];
+
+    static {
+        for (Phase phase : PHASES) {
+            SECTIONS[phase.ordinal()] = "Join:" + phase.name();
+        }
+    }
+    private static final JoinTracer instance = new JoinTracer();
+
+    // history[i][phase] — время фазы от касания, нс; -1 если фаза не наступила
+    private final long[][] history = new long[HISTORY_SIZE][PHASES.length];
+    private int historyCount;
+    private int historyNext;
+
+    private final long[] current = new long[PHASES.length];
+    private boolean active;
+    private int sessionId;
+
+    public static JoinTracer get() {
+        return instance;
+    }
+
+    private JoinTracer() {
+        Arrays.fill(current, -1);
+    }
+
+    // Начало нового подключения; незавершённое предыдущее сохраняется как есть.
+    // discoveredAtNanos — SystemClock.elapsedRealtimeNanos() обнаружения метки, а не момент вызова:
+    // касание могло ждать в очереди. Секции systrace открываются при вызове, задним числом их не начать
+    public synchronized void begin(long discoveredAtNanos) {
+        if (active) {
+            commit();
+        }
+        Arrays.fill(current, -1);
+        current[Phase.TAG_DISCOVERED.ordinal()] = discoveredAtNanos;
+        active = true;
+        sessionId++;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && Trace.isEnabled()) {
+            for (int i = 1; i < PHASES.length; i++) {
+                Trace.beginAsyncSection(SECTIONS[i], sessionId);
+            }
+        }
+    }
+
+    // Отмечает фазу текущего подключения; повторные отметки игнорируются
+    public synchronized void mark(Phase phase) {
+        if (!active || current[phase.ordinal()] >= 0) {
+            return;
+        }
+        current[phase.ordinal()] = SystemClock.elapsedRealtimeNanos();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && Trace.isEnabled()) {
+            Trace.endAsyncSection(SECTIONS[phase.ordinal()], sessionId);
+        }
+        if (phase == Phase.FIRST_RTP) {
+            Log.d(TAG, "Подключение #" + sessionId + " завершено за "
+                    + (current[phase.ordinal()] - current[0]) / 1_000_000 + " мс");
+            commit();
+        }
+    }
+
+    public synchronized boolean isActive() {
+        return active;
+    }
+
+    private void commit() {
+        long start = current[Phase.TAG_DISCOVERED.ordinal()];
+        long[] row = history[historyNext];
+        for (int i = 0; i < PHASES.length; i++) {
+            row[i] = current[i] >= 0 ? current[i] - start : -1;
+        }
+        historyNext = (historyNext + 1) % HISTORY_SIZE;
+        historyCount = Math.min(historyCount + 1, HISTORY_SIZE);
+        active = false;
+    }
+
+    // Перцентили времени каждой фазы от касания пропуска, мс
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Join phases (ms from tag, last " + historyCount + " joins):");
+        long[] values = new long[HISTORY_SIZE];
+        for (int p = 1; p < PHASES.length; p++) {
+            int n = 0;
+            for (int i = 0; i < historyCount; i++) {
+                long value = history[i][p];
+                if (value >= 0) {
+                    values[n++] = value;
+                }
+            }
+            if (n == 0) {
+                writer.println(prefix + "  " + PHASES[p] + ": -");
+                continue;
+            }
+            Arrays.sort(values, 0, n);
+            writer.println(prefix + "  " + PHASES[p]
+                    + ": n=" + n
+                    + " p50=" + toMs(percentile(values, n, 50))
+                    + " p90=" + toMs(percentile(values, n, 90))
+                    + " p99=" + toMs(percentile(values, n, 99))
+                    + " max=" + toMs(values[n - 1]));
+        }
+    }
+
+    // Последние подключения по отдельности: время каждой фазы от касания, мс
+    public synchronized void dumpRecent(String prefix, PrintWriter writer, int count) {
+        int n = Math.min(count, historyCount);
+        for (int k = 1; k <= n; k++) {
+            long[] row = history[(historyNext - k + HISTORY_SIZE) % HISTORY_SIZE];
+            StringBuilder sb = new StringBuilder(prefix).append("  join -").append(k).append(':');
+            for (int p = 1; p < PHASES.length; p++) {
+                sb.append(' ').append(PHASES[p]).append('=').append(row[p] >= 0 ? toMs(row[p]) : "-");
+            }
+            writer.println(sb);
+        }
+    }
+
+    private static long percentile(long[] sorted, int n, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, index))];
+    }
+
+    private static String toMs(long nanos) {
+        return String.valueOf(nanos / 1_000_000);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.mobileapp;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.core.content.FileProvider;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+// Выгрузка журнала событий для разбора на объекте: файл в кэше приложения и отправка
+// через системный диалог «Поделиться» (почта, мессенджер). Файл пишется вне главного потока
+public final class JournalExport {
+    private static final String TAG = "JournalExport";
+    private static final String DIR = "journal"; // совпадает с res/xml/journal_paths.xml
+
+    private JournalExport() {
+    }
+
+    public static void share(Activity activity) {
+        File dir = new File(activity.getCacheDir(), DIR);
+        String authority = activity.getPackageName() + ".journal";
+        new Thread(() -> {
+            File file;
+            try {
+                file = write(dir);
+            } catch (IOException e) {
+                Log.e(TAG, "Не удалось записать журнал", e);
+                return;
+            }
+            Uri uri = FileProvider.getUriForFile(activity, authority, file);
+            Intent send = new Intent(Intent.ACTION_SEND)
+                    .setType("text/plain")
+                    .putExtra(Intent.EXTRA_STREAM, uri)
+                    .putExtra(Intent.EXTRA_SUBJECT, file.getName())
+                    .addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            activity.runOnUiThread(() -> {
+                if (!activity.isFinishing()) {
+                    activity.startActivity(Intent.createChooser(send, "Журнал событий"));
+                }
+            });
+        }, "journal-export").start();
+    }
+
+    private static File write(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Нет каталога " + dir);
+        }
+        // В каталоге остаётся только последняя выгрузка
+        File[] old = dir.listFiles();
+        if (old != null) {
+            for (File f : old) {
+                f.delete();
+            }
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+        File file = new File(dir, "journal-" + stamp + ".txt");
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.println("Exported " + stamp);
+            writer.println("Transport " + HttpTransport.get().metricsSummary());
+            JoinTracer.get().dump("", writer);
+            EventJournal.get().dump("", writer, EventJournal.DEFAULT_CAPACITY);
+            if (writer.checkError()) {
+                throw new IOException("Ошибка записи " + file);
+            }
+        }
+        return file;
+    }
+}
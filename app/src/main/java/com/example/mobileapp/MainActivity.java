@@ -9,44 +9,60 @@ import android.os.Looper;
 import android.widget.TextView;
 import android.media.AudioManager;
 import android.content.Context;
-import android.app.PendingIntent;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.nfc.NfcAdapter;
 import android.nfc.Tag;
-import android.nfc.tech.NfcA;
 import android.widget.ArrayAdapter;
 import android.widget.Spinner;
 import android.view.View;
 import android.widget.AdapterView;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.webrtc.MediaStream;
 
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.WebSocket;
-import okhttp3.WebSocketListener;
 
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity implements ControlChannel.Listener, ServerDiscovery.Listener, BadgeReader.Listener,
+        WebRTCClient.StateListener, WebRTCClient.FailoverListener {
     private static final String TAG = "WebRTC_Audio";
+    // Сценарий подключения для :benchmark и :baselineprofile (только сборки с SCRIPTED_JOIN)
+    public static final String EXTRA_SCRIPTED_SERVER = "com.example.mobileapp.SCRIPTED_SERVER";
+    public static final String EXTRA_SCRIPTED_BADGE = "com.example.mobileapp.SCRIPTED_BADGE";
     private TextView connectionStatus; // TextView для отображения состояния подключения
     private TextView uid; // TextView для отображения UID пропуска
     private TextView fio;
     private Handler mainHandler; //нужен для обновлений UI из других потоков
-    private boolean isAudioEnabled = true; // Флаг состояния аудиовыхода
-    private boolean isSocketConnected = false;
-    private boolean isWebRTCConnected = false;
+    private volatile boolean isAudioEnabled = true; // Флаг состояния аудиовыхода
+    // Пишутся из потоков сокета, NFC и клиента WebRTC, поэтому volatile
+    private volatile boolean isSocketConnected = false;
+    private volatile boolean isWebRTCConnected = false;
     private NfcAdapter nfcAdapter;
-    private WebSocket webSocket;
+    private BadgeReader badgeReader;
+    private volatile ControlChannel controlChannel;
+    // Горячий резерв: управляющий канал к резервному серверу (только пауза пересылки до переключения)
+    private volatile ControlChannel backupChannel;
+    private volatile String backupIp;
     private WebRTCClient webRTCClient;
-    private OkHttpClient client;
-    private String NumberDevice;
-    private String FIO;
-    private String IP;
-    private boolean InNumberDevice = false;
+    private AudioOutputController audioOutputController;
+    private TelemetryUplink telemetryUplink;
+    private volatile int NumberDevice = ControlProtocol.NO_DEVICE;
+    private volatile String FIO;
+    private IdentityCache identityCache;
+    // Последний приложенный пропуск: ответ сервера с ФИО относится к нему
+    private volatile byte[] badgeUid;
+    private volatile String badgeUidHex;
+    private volatile String IP;
     private MediaStream audioStream;
+    private ServerDiscovery serverDiscovery;
+    private ArrayAdapter<String> serverAdapter;
+    private boolean serverPickedByUser = false; // после ручного выбора рейтинг не переключает сервер
+    private int pendingAutoSelection = -1;
+    private List<String> channelPaths;
+    private volatile String channelPath;
 
 
 
@@ -58,31 +74,63 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         Spinner spinner = findViewById(R.id.spinner);
-        ArrayList<String> items = new ArrayList<>();
-        items.add("10.42.0.1");
-        items.add("192.168.0.118");
-        items.add("192.168.0.36");
+        List<String> candidates = Arrays.asList(getResources().getStringArray(R.array.server_addresses));
+        ArrayList<String> items = new ArrayList<>(candidates);
 
-        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, items);
-        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        spinner.setAdapter(adapter);
+        serverAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, items);
+        serverAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(serverAdapter);
 
         spinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parentView, View selectedItemView, int position, long id) {
-                String selectedIp = parentView.getItemAtPosition(position).toString();
-                // Сохраняем выбранный IP
-                IP = selectedIp;
+                if (position == pendingAutoSelection) {
+                    pendingAutoSelection = -1;
+                } else if (IP != null) {
+                    serverPickedByUser = true;
+                }
+                selectServer(parentView.getItemAtPosition(position).toString());
+            }
+            @Override
+            public void onNothingSelected(AdapterView<?> parentView) {
+            }
+        });
+
+        Spinner channelSpinner = findViewById(R.id.channelSpinner);
+        channelPaths = Arrays.asList(getResources().getStringArray(R.array.stream_paths));
+        channelPath = channelPaths.get(0);
+        ArrayAdapter<String> channelAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, channelPaths);
+        channelAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        channelSpinner.setAdapter(channelAdapter);
+        channelSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parentView, View selectedItemView, int position, long id) {
+                selectChannel(channelPaths.get(position));
             }
             @Override
             public void onNothingSelected(AdapterView<?> parentView) {
             }
         });
 
-        webRTCClient = new WebRTCClient(this);; // Инициализация WebRTC клиента
+        serverDiscovery = new ServerDiscovery(this, this);
+        serverDiscovery.start(candidates);
+
+        webRTCClient = ((MobileApp) getApplication()).getWebRTCClient(); // WebRTC клиент уровня приложения
+        identityCache = ((MobileApp) getApplication()).getIdentityCache();
+        telemetryUplink = ((MobileApp) getApplication()).getTelemetryUplink();
         audioStream = webRTCClient.getMediaStream();
+        isWebRTCConnected = webRTCClient.hasActiveSession(); // после пересоздания Activity
+        webRTCClient.setStateListener(this);
+        webRTCClient.setFailoverListener(this);
         mainHandler = new Handler(Looper.getMainLooper());
         connectionStatus = findViewById(R.id.connectionStatus);
+        // Долгое нажатие на статус переключает профиль воспроизведения (со следующего подключения)
+        connectionStatus.setOnLongClickListener(v -> {
+            PlayoutProfile profile = webRTCClient.getPlayoutProfile().next();
+            webRTCClient.setPlayoutProfile(profile);
+            connectionStatus.setText("Playout: " + profile);
+            return true;
+        });
 
         nfcAdapter = NfcAdapter.getDefaultAdapter(this);
 
@@ -94,6 +142,7 @@ public class MainActivity extends AppCompatActivity {
         if (!nfcAdapter.isEnabled()) {
             Log.e("NFC", "NFC выключен. Пожалуйста, включите NFC в настройках.");
         }
+        badgeReader = new BadgeReader(nfcAdapter, this);
 
         // Кнопка для запуска WebRTC
         Button startCallButton = findViewById(R.id.startCallButton);
@@ -104,10 +153,28 @@ public class MainActivity extends AppCompatActivity {
         //Кнопка аудиовыхода
         Button audioOutputButton = findViewById(R.id.AudioOutputButton);
         audioOutputButton.setOnClickListener(v -> toggleAudioOutput());
+        audioOutputController = new AudioOutputController(this, webRTCClient, audioOutputButton);
 
         connectionStatus = findViewById(R.id.connectionStatus);
         uid = findViewById(R.id.uid);
+        // Долгое нажатие на UID включает и выключает горячий резерв на втором сервере
+        uid.setOnLongClickListener(v -> {
+            boolean enabled = !webRTCClient.isFailoverEnabled();
+            webRTCClient.setFailoverEnabled(enabled);
+            if (enabled && controlChannel != null) {
+                startBackup();
+            } else if (!enabled) {
+                stopBackup();
+            }
+            connectionStatus.setText("Failover: " + (enabled ? "ON" : "OFF"));
+            return true;
+        });
         fio = findViewById(R.id.fio);
+        // Долгое нажатие на ФИО выгружает журнал событий для разбора
+        fio.setOnLongClickListener(v -> {
+            JournalExport.share(this);
+            return true;
+        });
         mainHandler = new Handler(Looper.getMainLooper());
 
         //Кнопка разрыва соединения
@@ -116,233 +183,464 @@ public class MainActivity extends AppCompatActivity {
             stopCall(); // вызываем готовую функцию
             connectionStatus.setText("Call Stopped");
         });
+
+        if (savedInstanceState == null) {
+            runScriptedJoin(getIntent());
+        }
+    }
+
+    // Касание по интенту вместо метки: NFC не управляется из теста. Сервер выбирается явно,
+    // без ожидания поиска, дальше всё идёт обычным путём пропуска
+    private void runScriptedJoin(Intent intent) {
+        if (!BuildConfig.SCRIPTED_JOIN || badgeReader == null) {
+            return;
+        }
+        String server = intent.getStringExtra(EXTRA_SCRIPTED_SERVER);
+        String badge = intent.getStringExtra(EXTRA_SCRIPTED_BADGE);
+        byte[] uidBytes = badge != null ? UidCodec.fromHex(badge) : null;
+        if (server == null || uidBytes == null) {
+            return;
+        }
+        Log.d("NFC", "Сценарий подключения: " + server + " " + badge);
+        serverPickedByUser = true;
+        if (serverAdapter.getPosition(server) < 0) {
+            serverAdapter.add(server);
+        }
+        int position = serverAdapter.getPosition(server);
+        Spinner spinner = findViewById(R.id.spinner);
+        if (spinner.getSelectedItemPosition() != position) {
+            pendingAutoSelection = position;
+            spinner.setSelection(position);
+        }
+        selectServer(server);
+        connectToServer();
+        badgeReader.simulateTap(uidBytes);
     }
 
+    // Не блокирует: подключение идёт в потоке клиента, результат приходит в колбэк
     private void startWebRTC() {
-        try {
-            // Настройка WebRTC
-            webRTCClient.startConnectionViaHttp("http://"+IP+":8889/stream");
-            connectionStatus.setText("WebRTC Connected");
-            isWebRTCConnected = true;
-            Log.d(TAG, "WebRTC соединение установлено.");
-        } catch (Exception e) {
-            Log.e(TAG, "Ошибка при подключении к WebRTC серверу", e);
-            connectionStatus.setText("WebRTC Connection Error");
+        isWebRTCConnected = true;
+        connectionStatus.setText("WebRTC Connecting...");
+        webRTCClient.startConnectionViaHttp(streamUrl(channelPath), new WebRTCClient.ConnectCallback() {
+            @Override
+            public void onConnected() {
+                Log.d(TAG, "WebRTC соединение установлено.");
+                runOnUiThread(() -> connectionStatus.setText("WebRTC Connected"));
+            }
+
+            @Override
+            public void onError(String message) {
+                Log.e(TAG, "Ошибка при подключении к WebRTC серверу: " + message);
+                isWebRTCConnected = false;
+                runOnUiThread(() -> connectionStatus.setText("WebRTC Connection Error"));
+            }
+        });
+    }
+
+    // Поток клиента WebRTC: флаг обновляется сразу, экран — в UI-потоке
+    @Override
+    public void onStateChanged(WebRTCClient.State state) {
+        isWebRTCConnected = state != WebRTCClient.State.IDLE;
+        if (state == WebRTCClient.State.RECOVERING || state == WebRTCClient.State.PAUSED) {
+            runOnUiThread(() -> connectionStatus.setText("WebRTC " + state));
         }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        if (nfcAdapter != null) {
-            // Указываем флаг FLAG_IMMUTABLE для PendingIntent
-            PendingIntent pendingIntent = PendingIntent.getActivity(
-                    this,
-                    0,
-                    new Intent(this, getClass()).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP),
-                    PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_MUTABLE // Для совместимости с Android 12+
-            );
-
-            IntentFilter tagFilter = new IntentFilter(NfcAdapter.ACTION_TAG_DISCOVERED);
-            nfcAdapter.enableForegroundDispatch(this, pendingIntent, new IntentFilter[]{tagFilter}, null);
+        if (badgeReader != null) {
+            badgeReader.enable(this);
         }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        if (nfcAdapter != null) {
-            nfcAdapter.disableForegroundDispatch(this);
+        if (badgeReader != null) {
+            badgeReader.disable(this);
         }
     }
 
+    // Касание, пришедшее интентом (запуск приложения меткой), идёт тем же путём, что и reader mode
     @Override
     protected void onNewIntent(Intent intent) {
         super.onNewIntent(intent);
         Log.d("NFC", "Intent action: " + intent.getAction());
-        if (intent.getExtras() != null) {
-            Log.d("NFC", "Intent extras: " + intent.getExtras().toString());
+        runScriptedJoin(intent);
+        if (badgeReader == null) {
+            return;
         }
         if (NfcAdapter.ACTION_TAG_DISCOVERED.equals(intent.getAction()) ||
                 NfcAdapter.ACTION_NDEF_DISCOVERED.equals(intent.getAction()) ||
                 NfcAdapter.ACTION_TECH_DISCOVERED.equals(intent.getAction())) {
             Tag tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
             if (tag != null) {
-                NfcA nfcA = NfcA.get(tag);
-                try {
-                    nfcA.connect();
-                    AudioManager audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
-                    audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
-                    audioManager.setSpeakerphoneOn(false);
-                    if (nfcA != null && nfcA.isConnected()) {
-                        Log.d("NFC", "Successfully connected to tag");
-                    } else {
-                        Log.e("NFC", "Failed to connect to tag");
-                    }
-                    byte[] id = nfcA.getTag().getId(); // Получаем уникальный ID карты
-                    String cardNumber = bytesToHex(id); // Преобразуем байты в строку
-
-                    Log.d("NFC", "Card ID: " + cardNumber);
-                    updateUID(cardNumber);
-
-                    // Отправка номера карты через WebSocket
-                    sendCardNumberThroughWebSocket(cardNumber);
-                    nfcA.close();
-
-                    if (!isWebRTCConnected) {
-                        startWebRTC(); // Подключаем WebRTC
-                    }
-
-                } catch (Exception e) {
-                    Log.e("NFC", "Ошибка чтения NFC", e);
-                }
+                badgeReader.onTagDiscovered(tag);
             } else {
                 Log.e("NFC", "Tag is null");
             }
-        } else {
-            Log.e("NFC", "Invalid intent action or intent is null");
         }
     }
 
-    private String bytesToHex(byte[] bytes) {
-        StringBuilder stringBuilder = new StringBuilder();
-        for (byte b : bytes) {
-            stringBuilder.append(String.format("%02X", b));
+    // Поток "badge-join": всё, кроме обновления экрана, выполняется здесь, а не в UI-потоке
+    @Override
+    public void onBadgeTapped(BadgeReader.Tap tap) {
+        JoinTracer.get().begin(tap.discoveredAtNanos);
+        String cardNumber = tap.uidHex;
+        Log.d("NFC", "Card ID: " + cardNumber);
+        updateUID(cardNumber);
+        badgeUid = tap.uid;
+        badgeUidHex = cardNumber;
+        // Знакомый пропуск: ФИО показываем сразу, сервер подтвердит его следом
+        String cachedFio = identityCache.lookup(cardNumber);
+        if (cachedFio != null) {
+            updateFIO(cachedFio);
+        }
+
+        // Отправка номера карты через WebSocket
+        if (sendCardNumberThroughWebSocket(tap.uid, cardNumber)) {
+            badgeReader.onUidSent(tap);
+        }
+
+        AudioManager audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
+        audioManager.setMode(AudioManager.MODE_IN_COMMUNICATION);
+        audioManager.setSpeakerphoneOn(false);
+
+        runOnUiThread(() -> {
+            if (!isWebRTCConnected) {
+                startWebRTC(); // Подключаем WebRTC
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        webRTCClient.setStateListener(null); // клиент живёт дольше Activity
+        webRTCClient.setFailoverListener(null);
+        // Каналы переподключаются бесконечно и держат Activity через слушателя
+        ControlChannel channel = controlChannel;
+        controlChannel = null;
+        if (channel != null) {
+            channel.close();
+        }
+        stopBackup();
+        webRTCClient.setMediaPauseSignal(null);
+        telemetryUplink.setChannel(null);
+        if (serverDiscovery != null) {
+            serverDiscovery.stop();
+        }
+    }
+
+    private void selectServer(String selectedIp) {
+        if (selectedIp.equals(IP)) {
+            return;
+        }
+        // Сохраняем выбранный IP и заранее прогреваем соединения к серверу
+        IP = selectedIp;
+        HttpTransport.get().preconnect(IP);
+        if (webRTCClient != null) {
+            List<String> urls = new ArrayList<>();
+            for (String path : channelPaths) {
+                urls.add(streamUrl(path));
+            }
+            webRTCClient.setChannels(urls);
+            webRTCClient.prepareStandby(streamUrl(channelPath));
+        }
+    }
+
+    private String streamUrl(String path) {
+        return HttpTransport.whepBaseUrl(IP) + "/" + path;
+    }
+
+    // Выбор слышимого канала с экрана или по команде сервера (из потока сокета)
+    private void selectChannel(String path) {
+        if (path == null || path.isEmpty() || path.equals(channelPath)) {
+            return;
+        }
+        channelPath = path;
+        if (IP != null) {
+            webRTCClient.selectChannel(streamUrl(path));
+        }
+        Log.d(TAG, "Выбран канал: " + path);
+    }
+
+    // Рейтинг серверов (сначала из кэша, затем по свежей проверке): порядок в списке по RTT,
+    // лучший выбирается сам, если он доступен, пока оператор не выбрал сервер вручную
+    // и нет активного подключения
+    @Override
+    public void onServersRanked(List<ServerDiscovery.Server> servers, boolean fromCache) {
+        runOnUiThread(() -> {
+            if (isFinishing()) {
+                return;
+            }
+            List<String> ranked = new ArrayList<>();
+            for (ServerDiscovery.Server server : servers) {
+                ranked.add(server.ip);
+            }
+            for (int i = 0; i < serverAdapter.getCount(); i++) {
+                String ip = serverAdapter.getItem(i);
+                if (!ranked.contains(ip)) {
+                    ranked.add(ip); // адреса без результатов проверки — в конец
+                }
+            }
+            boolean locked = serverPickedByUser || controlChannel != null;
+            String target = IP;
+            if (!locked && !servers.isEmpty() && servers.get(0).isHealthy()) {
+                target = servers.get(0).ip;
+            }
+            Spinner spinner = findViewById(R.id.spinner);
+            serverAdapter.setNotifyOnChange(false);
+            serverAdapter.clear();
+            serverAdapter.addAll(ranked);
+            serverAdapter.notifyDataSetChanged();
+            int position = Math.max(0, ranked.indexOf(target));
+            if (spinner.getSelectedItemPosition() != position) {
+                pendingAutoSelection = position;
+                spinner.setSelection(position);
+            } else {
+                selectServer(ranked.get(position)); // позиция та же, onItemSelected не придёт
+            }
+            Log.d("ServerDiscovery", "Выбран сервер " + ranked.get(position) + (fromCache ? " (кэш)" : ""));
+        });
+    }
+
+    // Диагностика: adb shell dumpsys activity com.example.mobileapp/.MainActivity
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println(prefix + "Transport " + HttpTransport.get().metricsSummary());
+        JoinTracer.get().dump(prefix, writer);
+        if (badgeReader != null) {
+            badgeReader.dump(prefix, writer);
+        }
+        JoinTracer.get().dumpRecent(prefix, writer, 5);
+        if (audioOutputController != null) {
+            audioOutputController.dump(prefix, writer);
+        }
+        if (webRTCClient != null) {
+            webRTCClient.getStatsSampler().dump(prefix, writer);
+            webRTCClient.dumpRecovery(prefix, writer);
+        }
+        if (telemetryUplink != null) {
+            telemetryUplink.dump(prefix, writer);
         }
-        return stringBuilder.toString();
+        EventJournal.get().dump(prefix, writer, 200);
     }
 
     //Подключение к серверу через WebSocket
     private void connectToServer() {
-        if (webSocket != null) {
+        if (controlChannel != null && controlChannel.isOpen()) {
             Log.d("WebSocket", "Уже подключено");
             return;
         }
+        if (controlChannel != null) {
+            controlChannel.close(); // прекращаем переподключения к прежнему серверу
+        }
+        controlChannel = openChannel(IP);
+        webRTCClient.setMediaPauseSignal(controlChannel);
+        telemetryUplink.setChannel(controlChannel);
+        controlChannel.connect();
+        if (webRTCClient.isFailoverEnabled()) {
+            startBackup();
+        }
+    }
 
-        client = new OkHttpClient();
-        Request request = new Request.Builder().url("ws://"+IP+":8080").build();
+    private ControlChannel openChannel(String ip) {
+        ControlRoute route = new ControlRoute();
+        route.channel = new ControlChannel(ip, route);
+        return route.channel;
+    }
 
-        webSocket = client.newWebSocket(request, new WebSocketListener() {
-            @Override
-            public void onOpen(WebSocket webSocket, okhttp3.Response response) {
-                runOnUiThread(() -> {
-                    isSocketConnected = true;
-                    connectionStatus.setText("Connected (WebSocket)");
-                    Log.d("WebSocket", "Соединение открыто");
-                });
+    // Резерв — следующий сервер в рейтинге после текущего (в том числе прежний основной,
+    // когда он поднимется после перезапуска)
+    private void startBackup() {
+        String ip = null;
+        for (int i = 0; i < serverAdapter.getCount(); i++) {
+            String candidate = serverAdapter.getItem(i);
+            if (!candidate.equals(IP)) {
+                ip = candidate;
+                break;
             }
+        }
+        if (ip == null || ip.equals(backupIp)) {
+            return;
+        }
+        stopBackup();
+        backupIp = ip;
+        backupChannel = openChannel(ip);
+        webRTCClient.setBackupServer(HttpTransport.whepBaseUrl(ip), backupChannel);
+        backupChannel.connect();
+        Log.d("WebSocket", "Резервный сервер: " + ip);
+    }
 
-            @Override
-            public void onMessage(WebSocket webSocket, String text) {
-                Log.d("WebSocket", "Получено: " + text);
+    private void stopBackup() {
+        ControlChannel channel = backupChannel;
+        backupChannel = null;
+        backupIp = null;
+        if (channel != null) {
+            channel.close();
+        }
+        webRTCClient.setBackupServer(null, null);
+    }
 
-                if (InNumberDevice == false) {
-                    AudioMute(text);
+    // Поток клиента WebRTC: резервный сервер стал основным. Его управляющий канал занимает место
+    // основного, сервер заново узнаёт пропуск, новый резерв готовится в фоне
+    @Override
+    public void onFailover(String promotedBaseUrl) {
+        runOnUiThread(() -> {
+            String ip = backupIp;
+            ControlChannel promoted = backupChannel;
+            if (ip == null || promoted == null || !HttpTransport.whepBaseUrl(ip).equals(promotedBaseUrl)) {
+                return;
+            }
+            ControlChannel failed = controlChannel;
+            backupChannel = null;
+            backupIp = null;
+            controlChannel = promoted;
+            if (failed != null) {
+                failed.close();
+            }
+            webRTCClient.setMediaPauseSignal(promoted);
+            telemetryUplink.setChannel(promoted);
+            isSocketConnected = promoted.isOpen();
+            byte[] uidBytes = badgeUid;
+            if (uidBytes != null) {
+                promoted.sendUid(uidBytes, badgeUidHex);
+            }
+            selectServer(ip);
+            int position = serverAdapter.getPosition(ip);
+            Spinner spinner = findViewById(R.id.spinner);
+            if (position >= 0 && spinner.getSelectedItemPosition() != position) {
+                pendingAutoSelection = position;
+                spinner.setSelection(position);
+            }
+            connectionStatus.setText("Failover: " + ip);
+            startBackup();
+        });
+    }
 
-                }
-                if (InNumberDevice == true && !text.startsWith("FIO:")) {
-                    NumberDevice = text;
-                    Log.d("WebSocket", "Присвоен номер устройства: "+NumberDevice);
-                }
-                if (InNumberDevice == true && text.startsWith("FIO:")) {
-                    FIO = text.substring(4);
-                    InNumberDevice = false;
-                    updateFIO(FIO);
-                    Log.d("WebSocket", "Присвоены ФИО клиента: "+ FIO);
-                }
+    // Колбэки управляющих каналов: основной обслуживает Activity, резервный только подтверждает
+    // паузу пересылки, закрытые каналы игнорируются. Канал меняет роль при переключении на резерв
+    private final class ControlRoute implements ControlChannel.Listener {
+        ControlChannel channel;
+
+        @Override
+        public void onConnected(boolean binary) {
+            if (channel == controlChannel) {
+                webRTCClient.onPrimaryControlRestored();
+                MainActivity.this.onConnected(binary);
+            } else if (channel == backupChannel) {
+                webRTCClient.onBackupControlReady();
             }
+        }
 
-            @Override
-            public void onFailure(WebSocket socket, Throwable t, okhttp3.Response response) {
-                Log.e("WebSocket", "Ошибка соединения", t);
-                if (response != null) {
-                    Log.e("WebSocket", "Ответ сервера: " + response.code() + " " + response.message());
-                }
-                isSocketConnected = false;
-                webSocket = null;
-                runOnUiThread(() -> connectionStatus.setText("Connection Error"));
+        @Override
+        public void onControlMessage(ControlMessage message) {
+            if (channel == controlChannel) {
+                MainActivity.this.onControlMessage(message);
+            } else if (channel == backupChannel && message.opcode == ControlProtocol.OP_MEDIA_PAUSED) {
+                webRTCClient.onBackupPauseAck();
             }
+        }
 
-            @Override
-            public void onClosing(WebSocket webSocket, int code, String reason) {
-                Log.d("WebSocket", "Соединение закрывается: " + reason);
+        @Override
+        public void onDisconnected(boolean failure) {
+            if (channel == controlChannel) {
+                webRTCClient.onPrimaryControlLost();
+                MainActivity.this.onDisconnected(failure);
             }
+        }
 
-            @Override
-            public void onClosed(WebSocket webSocket, int code, String reason) {
-                Log.d("WebSocket", "Соединение закрыто: " + reason);
-                runOnUiThread(() -> connectionStatus.setText("Disconnected"));
+        @Override
+        public void onReconnecting(int attempt, long delayMs) {
+            if (channel == controlChannel) {
+                MainActivity.this.onReconnecting(attempt, delayMs);
             }
-        });
+        }
     }
 
-    //Регулировщик аудиовыхода
-    private void AudioMute(String text) {
-        if (NumberDevice != null && text.equals("0")) { //Если включил или обратился ко всем
-            isAudioEnabled = true;
-            runOnUiThread(() -> {
-                enableAudioOutput(true, true);
-                webRTCClient.setAudioEnabled(true);
-            });
-        }
-        if (NumberDevice != null && text.equals(NumberDevice)) { //Если обратились ко мне
-            isAudioEnabled = true;
-            runOnUiThread(() -> {
-                enableAudioOutput(false, true);
-                webRTCClient.setAudioEnabled(true);
-            });
-        }
-        if (NumberDevice != null && !text.equals(NumberDevice) && !text.equals("-1") && !text.equals("0")) { //Если обратились к другому
-            isAudioEnabled = false;
-            runOnUiThread(() -> {
-                enableAudioOutput(true, false);
-                webRTCClient.setAudioEnabled(false);
-            });
-        }
-        if (NumberDevice != null && text.equals("-1")) { //Если замутили всех
-            isAudioEnabled = false;
-            runOnUiThread(() -> {
-                enableAudioOutput(false, false);
-                webRTCClient.setAudioEnabled(false);
-            });
-        }
-    }
-
-    private void enableAudioOutput(boolean enable, boolean enable1) {
-        Button audioOutputButton = findViewById(R.id.AudioOutputButton);
+    @Override
+    public void onConnected(boolean binary) {
         runOnUiThread(() -> {
-            audioOutputButton.setEnabled(enable);
+            isSocketConnected = true;
+            connectionStatus.setText(binary ? "Connected (WebSocket, binary)" : "Connected (WebSocket)");
+        });
+    }
 
-            // Обновляем визуальное состояние кнопки
-            if (!enable1) {
-                audioOutputButton.setBackgroundResource(R.drawable.rounded_button_red);
-            } else {
-                audioOutputButton.setBackgroundResource(R.drawable.rounded_button_green);
-            }
+    @Override
+    public void onControlMessage(ControlMessage message) {
+        switch (message.opcode) {
+            case ControlProtocol.OP_ASSIGN_DEVICE:
+                NumberDevice = message.deviceId;
+                JoinTracer.get().mark(JoinTracer.Phase.DEVICE_NUMBER_RECEIVED);
+                Log.d("WebSocket", "Присвоен номер устройства: " + NumberDevice);
+                break;
+            case ControlProtocol.OP_IDENTITY:
+                if (message.deviceId != ControlProtocol.NO_DEVICE) {
+                    NumberDevice = message.deviceId;
+                }
+                FIO = message.text();
+                updateFIO(FIO);
+                rememberIdentity(FIO);
+                Log.d("WebSocket", "Присвоены ФИО клиента: " + FIO);
+                break;
+            case ControlProtocol.OP_SELECT_CHANNEL:
+                String path = message.text();
+                selectChannel(path);
+                int position = channelPaths.indexOf(path);
+                if (position >= 0) {
+                    runOnUiThread(() -> ((Spinner) findViewById(R.id.channelSpinner)).setSelection(position));
+                }
+                break;
+            case ControlProtocol.OP_MEDIA_PAUSED:
+                webRTCClient.onMediaPauseAck(message.text());
+                break;
+            default:
+                AudioMute(message);
+                break;
+        }
+    }
 
-            // Управление звуком устройства
-            AudioManager audioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
-            if (audioManager != null) {
-                audioManager.adjustStreamVolume(
-                        AudioManager.STREAM_MUSIC,
-                        enable1 ? AudioManager.ADJUST_UNMUTE : AudioManager.ADJUST_MUTE,
-                        0
-                );
-            }
+    @Override
+    public void onDisconnected(boolean failure) {
+        isSocketConnected = false;
+        runOnUiThread(() -> connectionStatus.setText(failure ? "Connection Error" : "Disconnected"));
+    }
 
-            Log.d("WebRTC_Audio", "Audio output: " + (enable ? "Enabled" : "Disabled"));
-            Log.d("WebRTC_Audio", "Audio output: " + (enable1 ? "ON" : "OFF"));
-        });
+    @Override
+    public void onReconnecting(int attempt, long delayMs) {
+        runOnUiThread(() -> connectionStatus.setText("Reconnecting (" + attempt + ")..."));
+    }
+
+    //Регулировщик аудиовыхода
+    private void AudioMute(ControlMessage message) {
+        int audio = ControlProtocol.audioState(message, NumberDevice);
+        if (audio == ControlProtocol.AUDIO_UNCHANGED) {
+            return;
+        }
+        applyAudioState((audio & ControlProtocol.AUDIO_BUTTON_ENABLED) != 0,
+                (audio & ControlProtocol.AUDIO_ON) != 0, message.receivedAtNanos);
+    }
+
+    // Команда применяется сразу в потоке сокета, кнопка обновится в ближайшем кадре
+    private void applyAudioState(boolean buttonEnabled, boolean audioOn, long arrivalNanos) {
+        isAudioEnabled = audioOn;
+        audioOutputController.apply(buttonEnabled, audioOn, arrivalNanos);
     }
 
     //Завершает соединение с сервером и отключает аудиовыход
     private void stopCall() {
-        if (webSocket != null) {
-            webSocket.close(1000, "Manual disconnect");
-            webSocket = null;
+        if (controlChannel != null) {
+            controlChannel.close();
+            controlChannel = null;
         }
+        stopBackup();
+        telemetryUplink.setChannel(null);
 
         if (webRTCClient != null) {
+            webRTCClient.setMediaPauseSignal(null);
             webRTCClient.closeConnection();
         }
 
@@ -371,8 +669,9 @@ public class MainActivity extends AppCompatActivity {
         }
 
         if (webRTCClient != null) {
-            webRTCClient.setAudioEnabled(isAudioEnabled);
-            Log.d("WebRTC_Audio", "WebRTC audio " + (isAudioEnabled ? "enabled" : "disabled"));
+            // Тем же путём, что и команды сервера: без звука приём приостанавливается,
+            // включение возобновляет его
+            webRTCClient.setAudioEnabled(isAudioEnabled, System.nanoTime());
         }
 
         // Проверка состояния наушников
@@ -385,8 +684,6 @@ public class MainActivity extends AppCompatActivity {
 
         int backgroundRes = isAudioEnabled ? R.drawable.rounded_button_green : R.drawable.rounded_button_red;
         audioOutputButton.setBackgroundResource(backgroundRes);
-
-        Log.d("WebRTC_Audio", "Audio output: " + (isAudioEnabled ? "ON" : "OFF"));
     }
 
     //Обновление текстового поля о состоянии соединения
@@ -421,16 +718,28 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
-    private void sendCardNumberThroughWebSocket(String cardNumber) {
-        if (webSocket != null) {
-            String message = cardNumber;
-            webSocket.send("UID:"+message);
-            InNumberDevice = true;
-            Log.d("WebSocket", "UID отправлен: " + cardNumber);
+    private void rememberIdentity(String fio) {
+        byte[] id = badgeUid;
+        String cardNumber = badgeUidHex;
+        if (id == null || cardNumber == null) {
+            return;
+        }
+        if (fio == null || fio.isEmpty()) {
+            identityCache.invalidate(cardNumber);
         } else {
-            Log.e("WebSocket", "WebSocket не подключен");
+            identityCache.store(id, cardNumber, fio);
         }
     }
-}
 
+    private boolean sendCardNumberThroughWebSocket(byte[] id, String cardNumber) {
+        ControlChannel channel = controlChannel;
+        if (channel != null && channel.sendUid(id, cardNumber)) {
+            JoinTracer.get().mark(JoinTracer.Phase.UID_SENT);
+            Log.d("WebSocket", "UID отправлен: " + cardNumber);
+            return true;
+        }
+        Log.e("WebSocket", "WebSocket не подключен");
+        return false;
+    }
+}
 
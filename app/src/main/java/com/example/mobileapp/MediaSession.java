@@ -0,0 +1,668 @@
+package com.example.mobileapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.DataChannel;
+import org.webrtc.IceCandidate;
+import org.webrtc.MediaConstraints;
+import org.webrtc.MediaStream;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.PeerConnection;
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsCollectorCallback;
+import org.webrtc.RTCStatsReport;
+import org.webrtc.RtpTransceiver;
+import org.webrtc.SdpObserver;
+import org.webrtc.SessionDescription;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Одна подписка на аудиопоток: PeerConnection + локальный offer + сессия WHEP.
+// Может быть подготовлена заранее (prepare) и подключена по касанию пропуска (connect)
+public class MediaSession {
+    private static final String TAG = "WebRTC_Audio";
+
+    // Опрос getStats до прихода RTP (первого или после паузы)
+    private static final long RTP_POLL_MS = 20;
+    private static final int RTP_MAX_POLLS = 250;
+    // Восстановление: ждём после DISCONNECTED, прежде чем делать ICE restart,
+    // и сколько ждём результата restart до полной пересборки сессии
+    private static final long DISCONNECT_GRACE_MS = 1500;
+    private static final long ICE_RESTART_TIMEOUT_MS = 5000;
+    // Период опроса счётчика пакетов сторожем RTP
+    private static final long RTP_WATCHDOG_POLL_MS = 250;
+
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "media-session");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public interface Listener {
+        void onRemoteStream(MediaSession session, MediaStream stream);
+
+        // ICE соединение установлено (впервые или после восстановления)
+        void onIceConnected(MediaSession session);
+
+        // Связь прервалась, начато восстановление
+        void onIceInterrupted(MediaSession session);
+
+        // ICE restart не помог: сессию нужно пересобрать
+        void onRecoveryFailed(MediaSession session);
+
+        // Пошли RTP-пакеты: впервые после подключения или после паузы
+        void onMediaFlowing(MediaSession session);
+
+        // Сервер не принял offer: сессия не подключится
+        void onConnectFailed(MediaSession session, String message);
+
+        // Сторож RTP: пакетов нет дольше заданного порога. Когда они пойдут снова — onMediaFlowing
+        void onMediaStalled(MediaSession session);
+    }
+
+    private final PeerConnectionFactory factory;
+    private final String streamUrl;
+    private final Listener listener;
+    private final WhepSession whepSession;
+    private final PlayoutProfile profile;
+    // Режим устойчивости к потерям: FEC, RED и NACK в offer
+    private final boolean resilient;
+    // Номер сессии в журнале событий
+    private final int journalId = System.identityHashCode(this);
+    // Фазы подключения в JoinTracer пишет только сессия, к которой подключается пользователь:
+    // ожидающие, резервные и сессии переключения иначе перезаписывали бы их
+    private volatile boolean joinTraced;
+    private volatile int negotiatedResilience;
+    private volatile MediaStream remoteStream;
+
+    // Освобождается в close() (поток клиента). Вызовы из других потоков, кроме signaling,
+    // идут под pcLock, чтобы не попасть на освобождённый объект; колбэки signaling-потока
+    // используют захваченную ссылку: dispose ждёт этот поток и не выполнится посреди колбэка
+    private volatile PeerConnection peerConnection;
+    private final Object pcLock = new Object();
+    private MediaConstraints mediaConstraints;
+    private String lastCandidateMid;
+
+    private long preparedAtMs;
+    private volatile boolean offerReady;
+    private volatile boolean gatheringComplete;
+    private volatile boolean connectRequested;
+    private volatile boolean offerSent;
+    private volatile boolean closed;
+    private volatile boolean firstRtpSeen;
+    // Принято пакетов на момент паузы пересылки сервером
+    private volatile long packetsAtPause;
+
+    // Сторож RTP; поля отсчёта трогает только колбэк getStats (signaling-поток)
+    private ScheduledFuture<?> rtpWatchdog;
+    private volatile long rtpStallMs;
+    private volatile boolean rtpWatchdogReset;
+    private long watchdogPackets;
+    private long watchdogProgressAtMs;
+    private boolean stallReported;
+
+    // Восстановление связи
+    private boolean interrupted;
+    private boolean restarting;
+    private ScheduledFuture<?> recoveryTimer;
+
+    public MediaSession(PeerConnectionFactory factory, String streamUrl, PlayoutProfile profile,
+                        boolean resilient, Listener listener) {
+        this.factory = factory;
+        this.streamUrl = streamUrl;
+        this.profile = profile;
+        this.resilient = resilient;
+        this.listener = listener;
+        this.whepSession = new WhepSession(streamUrl + "/whep"); // укажи актуальный путь к ресурсу на WHEP-сервере
+    }
+
+    public String getStreamUrl() {
+        return streamUrl;
+    }
+
+    // Путь ресурса WHEP для паузы пересылки; null, пока сервер не ответил
+    public String getResourcePath() {
+        return whepSession.getResourcePath();
+    }
+
+    public PlayoutProfile getProfile() {
+        return profile;
+    }
+
+    public boolean isResilient() {
+        return resilient;
+    }
+
+    public void traceJoin() {
+        joinTraced = true;
+    }
+
+    private void markJoin(JoinTracer.Phase phase) {
+        if (joinTraced) {
+            JoinTracer.get().mark(phase);
+        }
+    }
+
+    // Принимаемый поток (null, пока сервер его не прислал)
+    public MediaStream getRemoteStream() {
+        return remoteStream;
+    }
+
+    // Маска SdpUtils.RESILIENCE_* из answer сервера
+    public int getNegotiatedResilience() {
+        return negotiatedResilience;
+    }
+
+    // Создаёт PeerConnection и локальный offer; кандидаты собираются, пока ждём касания
+    public boolean prepare() {
+        if (!createPeerConnection()) {
+            return false;
+        }
+        preparedAtMs = SystemClock.elapsedRealtime();
+
+        PeerConnection pc = peerConnection;
+        pc.createOffer(new SdpObserverImpl() {
+            @Override
+            public void onCreateSuccess(SessionDescription sessionDescription) {
+                if (closed) {
+                    return;
+                }
+                pc.setLocalDescription(new SdpObserverImpl() {
+                    @Override
+                    public void onSetSuccess() {
+                        offerReady = true;
+                        if (connectRequested) {
+                            sendOffer();
+                        }
+                    }
+                }, mungeOffer(sessionDescription));
+            }
+        }, mediaConstraints);
+        return true;
+    }
+
+    // Готовый offer со всеми собранными кандидатами
+    public boolean isWarm() {
+        return offerReady && gatheringComplete && !offerSent && !closed;
+    }
+
+    public int getJournalId() {
+        return journalId;
+    }
+
+    public long ageMs() {
+        return SystemClock.elapsedRealtime() - preparedAtMs;
+    }
+
+    // Отправляет offer на сервер. Если offer ещё создаётся, он уйдёт сразу по готовности
+    public void connect() {
+        connectRequested = true;
+        if (offerReady) {
+            sendOffer();
+        }
+    }
+
+    private void sendOffer() {
+        synchronized (this) {
+            if (offerSent || closed) {
+                return;
+            }
+            offerSent = true;
+        }
+        markJoin(JoinTracer.Phase.OFFER_CREATED);
+
+        // Локальное описание уже содержит кандидаты, собранные к этому моменту;
+        // остальные догонят offer через PATCH (trickle ICE)
+        PeerConnection pc = peerConnection;
+        if (pc == null) {
+            return;
+        }
+        SessionDescription offer = pc.getLocalDescription();
+        whepSession.sendOffer(offer.description, new WhepSession.AnswerCallback() {
+            @Override
+            public void onAnswer(String sdpAnswer) {
+                if (closed) {
+                    return;
+                }
+                markJoin(JoinTracer.Phase.WHEP_RESPONSE);
+                negotiatedResilience = SdpUtils.negotiatedResilience(sdpAnswer);
+                if (resilient) {
+                    Log.d(TAG, "Защита от потерь согласована: "
+                            + SdpUtils.resilienceToString(negotiatedResilience));
+                }
+                try {
+                    SessionDescription answer = new SessionDescription(SessionDescription.Type.ANSWER, sdpAnswer);
+                    synchronized (pcLock) {
+                        PeerConnection current = peerConnection;
+                        if (closed || current == null) {
+                            return;
+                        }
+                        current.setRemoteDescription(new SdpObserverImpl(), answer);
+                    }
+                    Log.d(TAG, "Транспорт: " + HttpTransport.get().metricsSummary());
+                } catch (Exception e) {
+                    Log.e(TAG, "Ошибка обработки SDP ответа: " + e.getMessage());
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                Log.e(TAG, message);
+                if (!closed) {
+                    listener.onConnectFailed(MediaSession.this, message);
+                }
+            }
+        });
+        if (gatheringComplete) {
+            whepSession.endOfCandidates(lastCandidateMid);
+        }
+    }
+
+    private boolean createPeerConnection() {
+        // Направление задаёт recvonly-трансивер, ограничения для offer не нужны
+        mediaConstraints = new MediaConstraints();
+
+        ArrayList<PeerConnection.IceServer> iceServers = new ArrayList<>(); //Пустой список ICE серверов
+
+        // Создаем RTCConfig с этим сервером
+        PeerConnection.RTCConfiguration rtcConfig = new PeerConnection.RTCConfiguration(iceServers);
+        rtcConfig.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
+        // Кандидаты собираются заранее и не теряются, пока PeerConnection ждёт в резерве
+        rtcConfig.continualGatheringPolicy = PeerConnection.ContinualGatheringPolicy.GATHER_ONCE;
+        // Размер и поведение буфера джиттера по профилю воспроизведения
+        profile.apply(rtcConfig);
+
+        // Создаем PeerConnection
+        peerConnection = factory.createPeerConnection(rtcConfig, new PeerConnectionObserver());
+
+        if (peerConnection == null) {
+            Log.e(TAG, "Не удалось создать PeerConnection! Возвращено null.");
+            return false;
+        }
+
+        // Только приём: без локального источника и трека микрофон и запись не открываются
+        RtpTransceiver transceiver = peerConnection.addTransceiver(
+                MediaStreamTrack.MediaType.MEDIA_TYPE_AUDIO,
+                new RtpTransceiver.RtpTransceiverInit(RtpTransceiver.RtpTransceiverDirection.RECV_ONLY));
+        if (transceiver == null) {
+            Log.e(TAG, "Ошибка создания аудиотрансивера!");
+            return false;
+        }
+
+        Log.d(TAG, "WebRTC соединение #" + journalId + " создано (recvonly, профиль " + profile
+                + (resilient ? ", защита от потерь" : "") + ").");
+        return true;
+    }
+
+    // Сервер перестал пересылать поток: запоминаем счётчик пакетов, чтобы заметить возобновление
+    public void markPaused() {
+        getStats(report -> packetsAtPause = inboundPackets(report));
+    }
+
+    // getStats из любого потока; false — сессия закрыта
+    public boolean getStats(RTCStatsCollectorCallback callback) {
+        synchronized (pcLock) {
+            PeerConnection pc = peerConnection;
+            if (closed || pc == null) {
+                return false;
+            }
+            pc.getStats(callback);
+            return true;
+        }
+    }
+
+    // Следит, чтобы пакеты шли: без прироста дольше stallMs — onMediaStalled (один раз до возобновления).
+    // Повторный вызов начинает отсчёт заново, 0 — выключает
+    public void setRtpWatchdog(long stallMs) {
+        synchronized (this) {
+            if (rtpWatchdog != null) {
+                rtpWatchdog.cancel(false);
+                rtpWatchdog = null;
+            }
+            if (stallMs <= 0 || closed) {
+                return;
+            }
+            rtpStallMs = stallMs;
+            rtpWatchdogReset = true;
+            rtpWatchdog = scheduler.scheduleWithFixedDelay(this::checkRtp,
+                    0, RTP_WATCHDOG_POLL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void checkRtp() {
+        getStats(report -> {
+            long packets = inboundPackets(report);
+            long now = SystemClock.elapsedRealtime();
+            if (rtpWatchdogReset || packets > watchdogPackets) {
+                boolean resumed = stallReported && !rtpWatchdogReset;
+                rtpWatchdogReset = false;
+                stallReported = false;
+                watchdogPackets = packets;
+                watchdogProgressAtMs = now;
+                if (resumed) {
+                    listener.onMediaFlowing(MediaSession.this);
+                }
+            } else if (!stallReported && now - watchdogProgressAtMs >= rtpStallMs) {
+                stallReported = true;
+                listener.onMediaStalled(MediaSession.this);
+            }
+        });
+    }
+
+    // Ждёт первых пакетов после паузы; результат придёт в onMediaFlowing
+    public void awaitMediaResume() {
+        pollRtp(0, packetsAtPause);
+    }
+
+    // Параметры Opus (ptime, битрейт, стерео) по профилю воспроизведения и режим защиты от потерь
+    private SessionDescription mungeOffer(SessionDescription offer) {
+        String sdp = SdpUtils.setResilience(profile.mungeOffer(offer.description), resilient);
+        return new SessionDescription(offer.type, sdp);
+    }
+
+    private void pollRtp(int attempt, long baseline) {
+        if (closed || attempt >= RTP_MAX_POLLS) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            getStats(report -> {
+                if (inboundPackets(report) > baseline) {
+                    if (!firstRtpSeen) {
+                        firstRtpSeen = true;
+                        markJoin(JoinTracer.Phase.FIRST_RTP);
+                    }
+                    listener.onMediaFlowing(MediaSession.this);
+                } else {
+                    pollRtp(attempt + 1, baseline);
+                }
+            });
+        }, attempt == 0 ? 0 : RTP_POLL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static long inboundPackets(RTCStatsReport report) {
+        long total = 0;
+        for (RTCStats stats : report.getStatsMap().values()) {
+            if (!"inbound-rtp".equals(stats.getType())) {
+                continue;
+            }
+            Object packets = stats.getMembers().get("packetsReceived");
+            if (packets instanceof Number) {
+                total += ((Number) packets).longValue();
+            }
+        }
+        return total;
+    }
+
+    private void onIceInterrupted(long restartDelayMs) {
+        boolean notify;
+        synchronized (this) {
+            notify = !interrupted;
+            interrupted = true;
+            if (!restarting) {
+                cancelRecoveryTimer();
+                recoveryTimer = scheduler.schedule(this::restartIce, restartDelayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (notify) {
+            listener.onIceInterrupted(this);
+        }
+    }
+
+    private synchronized void onIceRecovered() {
+        cancelRecoveryTimer();
+        interrupted = false;
+        restarting = false;
+    }
+
+    private void cancelRecoveryTimer() {
+        if (recoveryTimer != null) {
+            recoveryTimer.cancel(false);
+            recoveryTimer = null;
+        }
+    }
+
+    // ICE restart через WHEP PATCH; вызывается при обрыве связи и при смене сети
+    public void restartIce() {
+        boolean notify;
+        // Методы PeerConnection синхронно уходят в signaling-поток, откуда приходят колбэки
+        // наблюдателя, поэтому вызываются без удержания блокировки
+        synchronized (this) {
+            if (closed || !offerSent || restarting) {
+                return;
+            }
+            notify = !interrupted;
+            interrupted = true;
+            restarting = true;
+            cancelRecoveryTimer();
+            recoveryTimer = scheduler.schedule(this::failRecovery, ICE_RESTART_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+        if (notify) {
+            listener.onIceInterrupted(this);
+        }
+        Log.d(TAG, "ICE restart");
+
+        synchronized (pcLock) {
+            PeerConnection pc = peerConnection;
+            if (closed || pc == null) {
+                return;
+            }
+            pc.restartIce();
+            pc.createOffer(new SdpObserverImpl() {
+                @Override
+                public void onCreateSuccess(SessionDescription generated) {
+                    if (closed) {
+                        return;
+                    }
+                    SessionDescription offer = mungeOffer(generated);
+                    pc.setLocalDescription(new SdpObserverImpl() {
+                        @Override
+                        public void onSetSuccess() {
+                            sendIceRestart(offer);
+                        }
+
+                        @Override
+                        public void onSetFailure(String s) {
+                            super.onSetFailure(s);
+                            failRecovery();
+                        }
+                    }, offer);
+                }
+
+                @Override
+                public void onCreateFailure(String s) {
+                    super.onCreateFailure(s);
+                    failRecovery();
+                }
+            }, mediaConstraints);
+        }
+    }
+
+    private void sendIceRestart(SessionDescription offer) {
+        whepSession.restartIce(offer.description, new WhepSession.AnswerCallback() {
+            @Override
+            public void onAnswer(String fragment) {
+                synchronized (pcLock) {
+                    PeerConnection pc = peerConnection;
+                    if (closed || pc == null || pc.getRemoteDescription() == null) {
+                        return;
+                    }
+                    String remote = SdpUtils.applyIceRestart(pc.getRemoteDescription().description, fragment);
+                    pc.setRemoteDescription(new SdpObserverImpl() {
+                        @Override
+                        public void onSetFailure(String s) {
+                            super.onSetFailure(s);
+                            failRecovery();
+                        }
+                    }, new SessionDescription(SessionDescription.Type.ANSWER, remote));
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                Log.e(TAG, message);
+                failRecovery();
+            }
+        });
+    }
+
+    private void failRecovery() {
+        synchronized (this) {
+            if (closed || !restarting) {
+                return;
+            }
+            cancelRecoveryTimer();
+            restarting = false;
+        }
+        Log.w(TAG, "ICE restart не удался, требуется пересборка сессии");
+        listener.onRecoveryFailed(this);
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        synchronized (this) {
+            cancelRecoveryTimer();
+            if (rtpWatchdog != null) {
+                rtpWatchdog.cancel(false);
+                rtpWatchdog = null;
+            }
+        }
+        whepSession.close(); // DELETE ресурса на сервере
+        // close() не освобождает нативный PeerConnection и наблюдателей: без dispose() каждая
+        // заменённая сессия (резерв, пересборка, каналы) остаётся в памяти до конца процесса.
+        // Вместе с ним освобождаются принятые потоки и треки
+        synchronized (pcLock) {
+            PeerConnection pc = peerConnection;
+            peerConnection = null;
+            remoteStream = null;
+            if (pc != null) {
+                pc.close();
+                pc.dispose();
+            }
+        }
+    }
+
+    private class PeerConnectionObserver implements PeerConnection.Observer {
+
+        @Override
+        public void onIceCandidatesRemoved(IceCandidate[] candidates) {
+            Log.d(TAG, "ICE candidates removed");
+        }
+
+        @Override
+        public void onSignalingChange(PeerConnection.SignalingState signalingState) {
+        }
+
+        @Override
+        public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+            EventJournal.get().record(EventJournal.Event.ICE_STATE, journalId, iceConnectionState.ordinal());
+            if (!offerSent || closed) {
+                return;
+            }
+            switch (iceConnectionState) {
+                case CONNECTED:
+                case COMPLETED:
+                    markJoin(JoinTracer.Phase.ICE_CONNECTED);
+                    if (!firstRtpSeen) {
+                        pollRtp(0, 0);
+                    }
+                    onIceRecovered();
+                    listener.onIceConnected(MediaSession.this);
+                    break;
+                case DISCONNECTED:
+                    // Короткие пропадания (роуминг между точками) часто проходят сами
+                    onIceInterrupted(DISCONNECT_GRACE_MS);
+                    break;
+                case FAILED:
+                    onIceInterrupted(0);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void onConnectionChange(PeerConnection.PeerConnectionState newState) {
+            // CONNECTED у PeerConnection означает завершённое DTLS-рукопожатие
+            if (newState == PeerConnection.PeerConnectionState.CONNECTED && offerSent) {
+                markJoin(JoinTracer.Phase.DTLS_CONNECTED);
+            }
+        }
+
+        @Override
+        public void onIceConnectionReceivingChange(boolean receiving) {
+        }
+
+        @Override
+        public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
+            if (iceGatheringState != PeerConnection.IceGatheringState.COMPLETE) {
+                return;
+            }
+            gatheringComplete = true;
+            if (offerSent) {
+                whepSession.endOfCandidates(lastCandidateMid);
+            }
+        }
+
+        @Override
+        public void onIceCandidate(IceCandidate iceCandidate) {
+            EventJournal.get().record(EventJournal.Event.ICE_CANDIDATE, journalId, iceCandidate.sdpMLineIndex);
+            lastCandidateMid = iceCandidate.sdpMid;
+            // До отправки offer кандидаты попадают в локальное описание,
+            // после — уходят на сервер через PATCH
+            if (offerSent) {
+                whepSession.addLocalCandidate(iceCandidate);
+            }
+        }
+
+        @Override
+        public void onAddStream(MediaStream mediaStream) {
+            Log.d(TAG, "New media stream added: " + mediaStream.toString());
+            remoteStream = mediaStream;
+            listener.onRemoteStream(MediaSession.this, mediaStream);
+        }
+
+        @Override
+        public void onRemoveStream(MediaStream mediaStream) {
+        }
+
+        @Override
+        public void onDataChannel(DataChannel dataChannel) {
+        }
+
+        @Override
+        public void onRenegotiationNeeded() {
+        }
+    }
+
+    static class SdpObserverImpl implements SdpObserver {
+        @Override
+        public void onCreateSuccess(SessionDescription sessionDescription) {
+            // Реализовать логику при успешном создании SDP
+        }
+
+        @Override
+        public void onSetSuccess() {
+            // Реализовать логику при успешной установке SDP
+        }
+
+        @Override
+        public void onCreateFailure(String s) {
+            Log.e(TAG, "SDP Create failed: " + s);
+        }
+
+        @Override
+        public void onSetFailure(String s) {
+            Log.e(TAG, "SDP Set failed: " + s);
+        }
+    }
+}
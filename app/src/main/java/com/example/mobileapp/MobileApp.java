@@ -0,0 +1,47 @@
+package com.example.mobileapp;
+
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+
+import java.io.File;
+
+// Объекты уровня процесса: переживают пересоздание Activity (поворот, возврат из фона)
+public class MobileApp extends Application {
+    private WebRTCClient webRTCClient;
+    private IdentityCache identityCache;
+    private TelemetryUplink telemetryUplink;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // В отладочной сборке журнал хранит и подробные события (ICE-кандидаты, повторы кадров)
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            EventJournal.get().setMinLevel(EventJournal.VERBOSE);
+        }
+        // Нативная инициализация WebRTC уходит с главного потока
+        RtcEngine.initAsync(this);
+        getIdentityCache().preload();
+    }
+
+    public synchronized WebRTCClient getWebRTCClient() {
+        if (webRTCClient == null) {
+            webRTCClient = new WebRTCClient(this);
+        }
+        return webRTCClient;
+    }
+
+    public synchronized TelemetryUplink getTelemetryUplink() {
+        if (telemetryUplink == null) {
+            telemetryUplink = new TelemetryUplink(this, getWebRTCClient());
+        }
+        return telemetryUplink;
+    }
+
+    public synchronized IdentityCache getIdentityCache() {
+        if (identityCache == null) {
+            identityCache = new IdentityCache(new File(getFilesDir(), "identity_cache.bin"),
+                    IdentityCache.DEFAULT_CAPACITY, IdentityCache.DEFAULT_TTL_MS);
+        }
+        return identityCache;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.mobileapp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.util.Log;
+
+// Следит за сменой сети (переход между точками доступа, потеря Wi-Fi)
+public class NetworkMonitor {
+    private static final String TAG = "NetworkMonitor";
+
+    public interface Listener {
+        // Сеть сменилась: адреса и локальные кандидаты ICE могли устареть
+        void onNetworkChanged();
+
+        void onNetworkLost();
+    }
+
+    private final ConnectivityManager connectivityManager;
+    private final Listener listener;
+    private ConnectivityManager.NetworkCallback callback;
+    private Network currentNetwork;
+    private LinkProperties currentLinkProperties;
+
+    public NetworkMonitor(Context context, Listener listener) {
+        this.connectivityManager = (ConnectivityManager) context.getApplicationContext()
+                .getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (callback != null || connectivityManager == null) {
+            return;
+        }
+        // Сервер находится в локальной Wi-Fi сети, выхода в интернет у неё может не быть
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+                .removeCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                .build();
+        callback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onAvailable(Network network) {
+                boolean changed;
+                synchronized (NetworkMonitor.this) {
+                    changed = currentNetwork != null && !currentNetwork.equals(network);
+                    if (changed) {
+                        currentLinkProperties = null;
+                    }
+                    currentNetwork = network;
+                }
+                if (changed) {
+                    Log.d(TAG, "Сеть сменилась: " + network);
+                    listener.onNetworkChanged();
+                }
+            }
+
+            @Override
+            public void onLinkPropertiesChanged(Network network, LinkProperties linkProperties) {
+                boolean changed;
+                synchronized (NetworkMonitor.this) {
+                    if (!network.equals(currentNetwork)) {
+                        return;
+                    }
+                    changed = currentLinkProperties != null
+                            && !currentLinkProperties.getLinkAddresses().equals(linkProperties.getLinkAddresses());
+                    currentLinkProperties = linkProperties;
+                }
+                if (changed) {
+                    Log.d(TAG, "Адреса сети изменились: " + linkProperties.getLinkAddresses());
+                    listener.onNetworkChanged();
+                }
+            }
+
+            @Override
+            public void onLost(Network network) {
+                synchronized (NetworkMonitor.this) {
+                    if (!network.equals(currentNetwork)) {
+                        return;
+                    }
+                }
+                Log.d(TAG, "Сеть потеряна: " + network);
+                listener.onNetworkLost();
+            }
+        };
+        connectivityManager.registerNetworkCallback(request, callback);
+    }
+
+    public void stop() {
+        if (callback != null) {
+            connectivityManager.unregisterNetworkCallback(callback);
+            callback = null;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.mobileapp;
+
+import org.webrtc.PeerConnection;
+
+// Профили воспроизведения: компромисс между задержкой и устойчивостью к джиттеру и потерям.
+// Применяются к RTCConfiguration (буфер джиттера) и к offer (параметры Opus в fmtp,
+// которые по RFC 7587 сообщают отправителю, как кодировать поток для нас)
+public enum PlayoutProfile {
+    //                 пакетов в буфере, ускорение, ptime, maxptime, стерео, битрейт
+    ULTRA_LOW_LATENCY(10, true, 10, 20, false, 32000),
+    BALANCED(25, true, 20, 40, false, 40000),
+    ROBUST(50, false, 20, 60, false, 64000);
+
+    public final int jitterBufferMaxPackets;
+    public final boolean jitterBufferFastAccelerate;
+    public final int ptimeMs;
+    public final int maxPtimeMs;
+    public final boolean stereo;
+    public final int maxAverageBitrate;
+
+    PlayoutProfile(int jitterBufferMaxPackets, boolean jitterBufferFastAccelerate,
+                   int ptimeMs, int maxPtimeMs, boolean stereo, int maxAverageBitrate) {
+        this.jitterBufferMaxPackets = jitterBufferMaxPackets;
+        this.jitterBufferFastAccelerate = jitterBufferFastAccelerate;
+        this.ptimeMs = ptimeMs;
+        this.maxPtimeMs = maxPtimeMs;
+        this.stereo = stereo;
+        this.maxAverageBitrate = maxAverageBitrate;
+    }
+
+    public void apply(PeerConnection.RTCConfiguration rtcConfig) {
+        rtcConfig.audioJitterBufferMaxPackets = jitterBufferMaxPackets;
+        rtcConfig.audioJitterBufferFastAccelerate = jitterBufferFastAccelerate;
+    }
+
+    public String mungeOffer(String sdp) {
+        return SdpUtils.setOpusParameters(sdp, ptimeMs, maxPtimeMs, stereo, maxAverageBitrate);
+    }
+
+    // Следующий профиль по кругу (переключение с экрана)
+    public PlayoutProfile next() {
+        PlayoutProfile[] all = values();
+        return all[(ordinal() + 1) % all.length];
+    }
+
+    // Имя из настроек; неизвестное или пустое — BALANCED
+    public static PlayoutProfile fromName(String name) {
+        if (name != null) {
+            for (PlayoutProfile profile : values()) {
+                if (profile.name().equals(name)) {
+                    return profile;
+                }
+            }
+        }
+        return BALANCED;
+    }
+}
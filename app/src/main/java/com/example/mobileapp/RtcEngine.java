@@ -0,0 +1,95 @@
+package com.example.mobileapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.webrtc.PeerConnectionFactory;
+import org.webrtc.audio.JavaAudioDeviceModule;
+
+import java.util.concurrent.CountDownLatch;
+
+// Общая для процесса фабрика PeerConnection, только для аудио:
+// без EGL-контекстов и видеокодеков. Создаётся один раз в фоновом потоке при старте приложения
+public final class RtcEngine {
+    private static final String TAG = "WebRTC_Audio";
+
+    private static volatile RtcEngine instance;
+
+    private final Context context;
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private volatile PeerConnectionFactory peerConnectionFactory;
+
+    public static RtcEngine get() {
+        RtcEngine local = instance;
+        if (local == null) {
+            throw new IllegalStateException("RtcEngine не инициализирован");
+        }
+        return local;
+    }
+
+    // Запускает инициализацию в фоне; повторные вызовы ничего не делают
+    public static synchronized void initAsync(Context context) {
+        if (instance != null) {
+            return;
+        }
+        RtcEngine engine = new RtcEngine(context.getApplicationContext());
+        instance = engine;
+        Thread thread = new Thread(engine::initialize, "rtc-init");
+        thread.start();
+    }
+
+    private RtcEngine(Context context) {
+        this.context = context;
+    }
+
+    private void initialize() {
+        long start = System.nanoTime();
+        try {
+            // 1. Инициализация WebRTC (без внутреннего трассировщика)
+            // RED для Opus доступен только через field trial; в обычный offer он не попадает (SdpUtils.setResilience)
+            PeerConnectionFactory.InitializationOptions options = PeerConnectionFactory.InitializationOptions.builder(context)
+                    .setEnableInternalTracer(false)
+                    .setFieldTrials("WebRTC-Audio-Red-For-Opus/Enabled/")
+                    .createInitializationOptions();
+            PeerConnectionFactory.initialize(options);
+
+            // 2. Модуль аудиоустройств только для воспроизведения: без аппаратных AEC/NS
+            // (они подмешивают обработку в тракт вывода) и с низколатентным AudioTrack.
+            // Запись не инициализируется, пока нет локального трека, а его в recvonly нет
+            JavaAudioDeviceModule audioDeviceModule = JavaAudioDeviceModule.builder(context)
+                    .setUseHardwareAcousticEchoCanceler(false)
+                    .setUseHardwareNoiseSuppressor(false)
+                    .setUseLowLatency(true)
+                    .createAudioDeviceModule();
+
+            // 3. Создание фабрики: видеокодеки не нужны, EGL не создаётся
+            PeerConnectionFactory.Options factoryOptions = new PeerConnectionFactory.Options();
+            peerConnectionFactory = PeerConnectionFactory.builder()
+                    .setOptions(factoryOptions)
+                    .setAudioDeviceModule(audioDeviceModule)
+                    .createPeerConnectionFactory();
+
+            // Фабрика держит свою ссылку на модуль
+            audioDeviceModule.release();
+
+            if (peerConnectionFactory == null) {
+                Log.e(TAG, "Ошибка создания PeerConnectionFactory!");
+            } else {
+                Log.d(TAG, "PeerConnectionFactory инициализирована за "
+                        + (System.nanoTime() - start) / 1_000_000 + " мс");
+            }
+        } finally {
+            ready.countDown();
+        }
+    }
+
+    // Ждёт окончания инициализации; нельзя вызывать из главного потока
+    public PeerConnectionFactory awaitFactory() throws InterruptedException {
+        ready.await();
+        return peerConnectionFactory;
+    }
+
+    public boolean isReady() {
+        return ready.getCount() == 0;
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.mobileapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.nsd.NsdManager;
+import android.net.nsd.NsdServiceInfo;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Поиск серверов: параллельная проверка всех известных адресов на портах управления (:8080)
+// и WHEP (:8889), плюс серверы, объявленные в локальной сети через DNS-SD.
+// Серверы ранжируются по доступности и времени отклика; результат кэшируется с TTL
+public class ServerDiscovery {
+    private static final String TAG = "ServerDiscovery";
+    private static final String SERVICE_TYPE = "_claudio._tcp.";
+    private static final long PROBE_TIMEOUT_MS = 1500;
+    private static final long CACHE_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final String PREFS = "server_discovery";
+    private static final String KEY_RANKING = "ranking";
+    private static final String KEY_SAVED_AT = "saved_at";
+
+    public interface Listener {
+        // Вызывается в фоновом потоке; список отсортирован, лучший сервер первый
+        void onServersRanked(List<Server> servers, boolean fromCache);
+    }
+
+    public static final class Server {
+        public final String ip;
+        long controlRttMs = -1; // -1 — порт недоступен
+        long whepRttMs = -1;
+
+        Server(String ip) {
+            this.ip = ip;
+        }
+
+        public boolean isHealthy() {
+            return controlRttMs >= 0 && whepRttMs >= 0;
+        }
+
+        // Меньше — лучше: сначала полностью доступные, затем по худшему из двух RTT
+        long score() {
+            int downPorts = (controlRttMs < 0 ? 1 : 0) + (whepRttMs < 0 ? 1 : 0);
+            return downPorts * 1_000_000L + Math.max(controlRttMs, whepRttMs);
+        }
+
+        @Override
+        public String toString() {
+            return ip + " (control " + controlRttMs + " ms, whep " + whepRttMs + " ms)";
+        }
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final OkHttpClient probeClient;
+    private final SharedPreferences prefs;
+    private final NsdManager nsdManager;
+    private NsdManager.DiscoveryListener discoveryListener;
+    // NsdManager разрешает по одной службе за раз
+    private final ArrayDeque<NsdServiceInfo> resolveQueue = new ArrayDeque<>();
+    private boolean resolving;
+
+    private final Map<String, Server> servers = new LinkedHashMap<>();
+
+    public ServerDiscovery(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        this.prefs = this.context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        this.nsdManager = (NsdManager) this.context.getSystemService(Context.NSD_SERVICE);
+        // Короткие таймауты поверх общего транспорта: удачные проверки заодно прогревают пул
+        this.probeClient = HttpTransport.get().client().newBuilder()
+                .connectTimeout(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .callTimeout(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+    }
+
+    // Сразу отдаёт свежий кэш, затем всегда проверяет все кандидаты: кэш мог устареть
+    // раньше TTL (сервер упал, сеть сменилась). Заодно слушает DNS-SD
+    public void start(List<String> candidates) {
+        List<Server> cached = loadCache();
+        if (cached != null) {
+            synchronized (this) {
+                for (Server server : cached) {
+                    servers.put(server.ip, server);
+                }
+            }
+            Log.d(TAG, "Серверы из кэша: " + cached);
+            listener.onServersRanked(cached, true);
+        }
+        probe(candidates);
+        startNsd();
+    }
+
+    public void stop() {
+        if (discoveryListener != null && nsdManager != null) {
+            try {
+                nsdManager.stopServiceDiscovery(discoveryListener);
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Поиск DNS-SD уже остановлен");
+            }
+            discoveryListener = null;
+        }
+    }
+
+    // Проверяет все адреса одновременно и публикует рейтинг, когда ответят (или истекут) все
+    public void probe(List<String> candidates) {
+        List<Server> round = new ArrayList<>();
+        synchronized (this) {
+            for (String ip : candidates) {
+                Server server = servers.get(ip);
+                if (server == null) {
+                    server = new Server(ip);
+                    servers.put(ip, server);
+                }
+                round.add(server);
+            }
+        }
+        if (round.isEmpty()) {
+            return;
+        }
+        AtomicInteger pending = new AtomicInteger(round.size() * 2);
+        Runnable onProbeDone = () -> {
+            if (pending.decrementAndGet() == 0) {
+                publish();
+            }
+        };
+        for (Server server : round) {
+            probePort(server, HttpTransport.CONTROL_PORT, onProbeDone);
+            probePort(server, HttpTransport.WHEP_PORT, onProbeDone);
+        }
+    }
+
+    private void probePort(Server server, int port, Runnable onDone) {
+        Request request = new Request.Builder().url("http://" + server.ip + ":" + port + "/").head().build();
+        long start = System.nanoTime();
+        probeClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                record(server, port, -1);
+                onDone.run();
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // Любой HTTP-ответ (даже 404/426) означает, что сервис жив
+                response.close();
+                record(server, port, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                onDone.run();
+            }
+        });
+    }
+
+    private synchronized void record(Server server, int port, long rttMs) {
+        if (port == HttpTransport.CONTROL_PORT) {
+            server.controlRttMs = rttMs;
+        } else {
+            server.whepRttMs = rttMs;
+        }
+    }
+
+    private void publish() {
+        List<Server> ranked;
+        synchronized (this) {
+            ranked = new ArrayList<>(servers.values());
+        }
+        Collections.sort(ranked, (a, b) -> Long.compare(a.score(), b.score()));
+        Log.d(TAG, "Рейтинг серверов: " + ranked);
+        saveCache(ranked);
+        listener.onServersRanked(ranked, false);
+    }
+
+    private void startNsd() {
+        if (nsdManager == null || discoveryListener != null) {
+            return;
+        }
+        discoveryListener = new NsdManager.DiscoveryListener() {
+            @Override
+            public void onStartDiscoveryFailed(String serviceType, int errorCode) {
+                Log.w(TAG, "DNS-SD не запустился: " + errorCode);
+                discoveryListener = null;
+            }
+
+            @Override
+            public void onStopDiscoveryFailed(String serviceType, int errorCode) {
+            }
+
+            @Override
+            public void onDiscoveryStarted(String serviceType) {
+                Log.d(TAG, "Поиск серверов DNS-SD: " + serviceType);
+            }
+
+            @Override
+            public void onDiscoveryStopped(String serviceType) {
+            }
+
+            @Override
+            public void onServiceFound(NsdServiceInfo serviceInfo) {
+                enqueueResolve(serviceInfo);
+            }
+
+            @Override
+            public void onServiceLost(NsdServiceInfo serviceInfo) {
+            }
+        };
+        nsdManager.discoverServices(SERVICE_TYPE, NsdManager.PROTOCOL_DNS_SD, discoveryListener);
+    }
+
+    private synchronized void enqueueResolve(NsdServiceInfo serviceInfo) {
+        resolveQueue.add(serviceInfo);
+        resolveNext();
+    }
+
+    private synchronized void resolveNext() {
+        if (resolving || resolveQueue.isEmpty()) {
+            return;
+        }
+        resolving = true;
+        nsdManager.resolveService(resolveQueue.poll(), new NsdManager.ResolveListener() {
+            @Override
+            public void onResolveFailed(NsdServiceInfo serviceInfo, int errorCode) {
+                Log.w(TAG, "Не удалось разрешить " + serviceInfo.getServiceName() + ": " + errorCode);
+                onResolved();
+            }
+
+            @Override
+            public void onServiceResolved(NsdServiceInfo serviceInfo) {
+                String ip = serviceInfo.getHost().getHostAddress();
+                Log.d(TAG, "Объявлен сервер " + serviceInfo.getServiceName() + ": " + ip);
+                probe(Collections.singletonList(ip));
+                onResolved();
+            }
+        });
+    }
+
+    private synchronized void onResolved() {
+        resolving = false;
+        resolveNext();
+    }
+
+    // Формат: "ip,controlRtt,whepRtt;..."
+    private void saveCache(List<Server> ranked) {
+        StringBuilder sb = new StringBuilder();
+        for (Server server : ranked) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(server.ip).append(',').append(server.controlRttMs).append(',').append(server.whepRttMs);
+        }
+        prefs.edit()
+                .putString(KEY_RANKING, sb.toString())
+                .putLong(KEY_SAVED_AT, System.currentTimeMillis())
+                .apply();
+    }
+
+    private List<Server> loadCache() {
+        long savedAt = prefs.getLong(KEY_SAVED_AT, 0);
+        String ranking = prefs.getString(KEY_RANKING, null);
+        long age = System.currentTimeMillis() - savedAt;
+        if (ranking == null || ranking.isEmpty() || age < 0 || age > CACHE_TTL_MS) {
+            return null;
+        }
+        List<Server> result = new ArrayList<>();
+        for (String entry : ranking.split(";")) {
+            String[] parts = entry.split(",");
+            if (parts.length != 3) {
+                return null;
+            }
+            Server server = new Server(parts[0]);
+            try {
+                server.controlRttMs = Long.parseLong(parts[1]);
+                server.whepRttMs = Long.parseLong(parts[2]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            result.add(server);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.mobileapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Периодический опрос getStats принимаемого аудиопотока.
+// Значения за интервал складываются в кольцевые буферы примитивов, при выходе за пороги — тревоги
+public class StatsSampler {
+    private static final String TAG = "StatsSampler";
+    private static final int HISTORY_SIZE = 300; // 5 минут при опросе раз в секунду
+
+    // Метрики за интервал опроса
+    public static final int JITTER_MS = 0;
+    public static final int LOSS_RATIO = 1;
+    public static final int CONCEALMENT_RATIO = 2;
+    public static final int JITTER_BUFFER_MS = 3;
+    public static final int AUDIO_ENERGY = 4;
+    public static final int RTT_MS = 5;
+    private static final int METRIC_COUNT = 6;
+    private static final String[] METRIC_NAMES = {
+            "jitterMs", "lossRatio", "concealmentRatio", "jitterBufferMs", "audioEnergy", "rttMs"
+    };
+
+    // Пороги тревог
+    private static final double CONCEALMENT_THRESHOLD = 0.05; // 5% скрытых отсчётов
+    private static final int CONCEALMENT_SUSTAIN_SAMPLES = 3;
+    private static final double LOSS_THRESHOLD = 0.03;
+    private static final int LOSS_SUSTAIN_SAMPLES = 3;
+    private static final double JITTER_SPIKE_MIN_MS = 30;
+    private static final double JITTER_SPIKE_FACTOR = 3; // во сколько раз выше скользящего среднего
+    private static final int JITTER_BASELINE_SAMPLES = 10;
+    private static final double RTT_THRESHOLD_MS = 150;
+
+    public enum Alarm {
+        CONCEALMENT,
+        PACKET_LOSS,
+        JITTER_SPIKE,
+        HIGH_RTT
+    }
+
+    public interface Listener {
+        // raised = true при срабатывании, false при возврате к норме
+        void onAlarm(Alarm alarm, boolean raised, double value);
+    }
+
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "stats-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final long intervalMs;
+    private final Listener listener;
+    private final SampleRing[] rings = new SampleRing[METRIC_COUNT];
+    private final boolean[] alarmRaised = new boolean[Alarm.values().length];
+    private final Runnable pollTask = this::poll;
+
+    // Опрашиваемая сессия; её PeerConnection может быть освобождён в любой момент,
+    // поэтому getStats идёт через сессию
+    private volatile MediaSession session;
+    // Номер опрашиваемой сессии: отчёт, запрошенный у прежней (после переподключения
+    // или замены резервом), приходит с опозданием и отбрасывается
+    private volatile int generation;
+    // Задержка в буфере джиттера и доля сокрытия отдельно по профилям воспроизведения
+    private PlayoutProfile profile = PlayoutProfile.BALANCED;
+    private final SampleRing[] profileJitterBufferMs = new SampleRing[PlayoutProfile.values().length];
+    private final SampleRing[] profileConcealment = new SampleRing[PlayoutProfile.values().length];
+    private ScheduledFuture<?> pollFuture;
+
+    // Накопительные счётчики предыдущего отсчёта
+    private boolean hasPrevious;
+    private long prevPacketsReceived;
+    private long prevPacketsLost;
+    private double prevConcealedSamples;
+    private double prevTotalSamples;
+    private double prevJitterBufferDelay;
+    private double prevJitterBufferEmitted;
+    private double prevTotalAudioEnergy;
+    private int concealmentStreak;
+    private int lossStreak;
+
+    // Значения текущего отчёта, заполняются в onStatsDelivered
+    private long packetsReceived;
+    private long packetsLost;
+    private double jitter;
+    private double concealedSamples;
+    private double totalSamples;
+    private double jitterBufferDelay;
+    private double jitterBufferEmitted;
+    private double totalAudioEnergy;
+    private double rtt;
+    private boolean foundInbound;
+
+    public StatsSampler(long intervalMs, Listener listener) {
+        this.intervalMs = intervalMs;
+        this.listener = listener;
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            rings[i] = new SampleRing(HISTORY_SIZE);
+        }
+        for (int i = 0; i < profileJitterBufferMs.length; i++) {
+            profileJitterBufferMs[i] = new SampleRing(HISTORY_SIZE);
+            profileConcealment[i] = new SampleRing(HISTORY_SIZE);
+        }
+    }
+
+    public synchronized void start(MediaSession session) {
+        stop();
+        this.session = session;
+        this.profile = session.getProfile();
+        generation++;
+        hasPrevious = false;
+        concealmentStreak = 0;
+        lossStreak = 0;
+        pollFuture = scheduler.scheduleWithFixedDelay(pollTask, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (pollFuture != null) {
+            pollFuture.cancel(false);
+            pollFuture = null;
+        }
+        session = null;
+    }
+
+    private void poll() {
+        int requested = generation; // до сессии: start() меняет сессию раньше номера
+        MediaSession current = session;
+        if (current != null) {
+            current.getStats(report -> onStatsDelivered(report, requested));
+        }
+    }
+
+    private synchronized void onStatsDelivered(RTCStatsReport report, int requested) {
+        if (session == null || requested != generation) {
+            return;
+        }
+        foundInbound = false;
+        rtt = Double.NaN;
+        for (RTCStats stats : report.getStatsMap().values()) {
+            String type = stats.getType();
+            if ("inbound-rtp".equals(type)) {
+                readInbound(stats.getMembers());
+            } else if ("candidate-pair".equals(type)) {
+                readCandidatePair(stats.getMembers());
+            }
+        }
+        if (foundInbound) {
+            record(SystemClock.elapsedRealtime());
+        }
+    }
+
+    private void readInbound(Map<String, Object> members) {
+        if (!"audio".equals(members.get("kind"))) {
+            return;
+        }
+        foundInbound = true;
+        packetsReceived = (long) number(members.get("packetsReceived"));
+        packetsLost = (long) number(members.get("packetsLost"));
+        jitter = number(members.get("jitter"));
+        concealedSamples = number(members.get("concealedSamples"));
+        totalSamples = number(members.get("totalSamplesReceived"));
+        jitterBufferDelay = number(members.get("jitterBufferDelay"));
+        jitterBufferEmitted = number(members.get("jitterBufferEmittedCount"));
+        totalAudioEnergy = number(members.get("totalAudioEnergy"));
+    }
+
+    private void readCandidatePair(Map<String, Object> members) {
+        if (!Boolean.TRUE.equals(members.get("nominated"))) {
+            return;
+        }
+        double value = number(members.get("currentRoundTripTime"));
+        if (value > 0) {
+            rtt = value;
+        }
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    private void record(long now) {
+        if (hasPrevious) {
+            long received = packetsReceived - prevPacketsReceived;
+            long lost = packetsLost - prevPacketsLost;
+            double samples = totalSamples - prevTotalSamples;
+            double emitted = jitterBufferEmitted - prevJitterBufferEmitted;
+
+            double lossRatio = received + lost > 0 ? (double) Math.max(0, lost) / (received + lost) : 0;
+            double concealmentRatio = samples > 0 ? (concealedSamples - prevConcealedSamples) / samples : 0;
+            double jitterBufferMs = emitted > 0 ? (jitterBufferDelay - prevJitterBufferDelay) / emitted * 1000 : 0;
+            double jitterMs = jitter * 1000;
+
+            double jitterBaseline = rings[JITTER_MS].mean(JITTER_BASELINE_SAMPLES);
+
+            rings[JITTER_MS].add(now, jitterMs);
+            rings[LOSS_RATIO].add(now, lossRatio);
+            rings[CONCEALMENT_RATIO].add(now, concealmentRatio);
+            rings[JITTER_BUFFER_MS].add(now, jitterBufferMs);
+            rings[AUDIO_ENERGY].add(now, totalAudioEnergy - prevTotalAudioEnergy);
+            rings[RTT_MS].add(now, Double.isNaN(rtt) ? 0 : rtt * 1000);
+            if (emitted > 0) {
+                profileJitterBufferMs[profile.ordinal()].add(now, jitterBufferMs);
+                profileConcealment[profile.ordinal()].add(now, concealmentRatio);
+            }
+
+            concealmentStreak = concealmentRatio > CONCEALMENT_THRESHOLD ? concealmentStreak + 1 : 0;
+            lossStreak = lossRatio > LOSS_THRESHOLD ? lossStreak + 1 : 0;
+            setAlarm(Alarm.CONCEALMENT, concealmentStreak >= CONCEALMENT_SUSTAIN_SAMPLES,
+                    concealmentStreak == 0, concealmentRatio);
+            setAlarm(Alarm.PACKET_LOSS, lossStreak >= LOSS_SUSTAIN_SAMPLES, lossStreak == 0, lossRatio);
+
+            boolean spike = !Double.isNaN(jitterBaseline)
+                    && jitterMs > JITTER_SPIKE_MIN_MS
+                    && jitterMs > jitterBaseline * JITTER_SPIKE_FACTOR;
+            setAlarm(Alarm.JITTER_SPIKE, spike, jitterMs <= JITTER_SPIKE_MIN_MS, jitterMs);
+
+            double rttMs = rings[RTT_MS].last();
+            setAlarm(Alarm.HIGH_RTT, rttMs > RTT_THRESHOLD_MS, rttMs <= RTT_THRESHOLD_MS, rttMs);
+        }
+        hasPrevious = true;
+        prevPacketsReceived = packetsReceived;
+        prevPacketsLost = packetsLost;
+        prevConcealedSamples = concealedSamples;
+        prevTotalSamples = totalSamples;
+        prevJitterBufferDelay = jitterBufferDelay;
+        prevJitterBufferEmitted = jitterBufferEmitted;
+        prevTotalAudioEnergy = totalAudioEnergy;
+    }
+
+    // Тревога срабатывает при raise и снимается только при clear (гистерезис)
+    private void setAlarm(Alarm alarm, boolean raise, boolean clear, double value) {
+        int i = alarm.ordinal();
+        if (!alarmRaised[i] && raise) {
+            alarmRaised[i] = true;
+            Log.w(TAG, "Тревога " + alarm + ": " + value);
+            listener.onAlarm(alarm, true, value);
+        } else if (alarmRaised[i] && clear) {
+            alarmRaised[i] = false;
+            Log.d(TAG, "Норма " + alarm + ": " + value);
+            listener.onAlarm(alarm, false, value);
+        }
+    }
+
+    // Последнее значение метрики за интервал (NaN, если отсчётов ещё нет)
+    public synchronized double last(int metric) {
+        return rings[metric].last();
+    }
+
+    public synchronized double mean(int metric, int samples) {
+        return rings[metric].mean(samples);
+    }
+
+    public synchronized void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "Receive stats (interval " + intervalMs + " ms, "
+                + rings[0].size() + " samples):");
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            SampleRing ring = rings[i];
+            writer.println(prefix + "  " + METRIC_NAMES[i]
+                    + ": last=" + format(ring.last())
+                    + " mean=" + format(ring.mean(ring.size()))
+                    + " max=" + format(ring.max()));
+        }
+        writer.println(prefix + "  profile: " + profile);
+        for (PlayoutProfile p : PlayoutProfile.values()) {
+            SampleRing buffer = profileJitterBufferMs[p.ordinal()];
+            if (buffer.size() == 0) {
+                continue;
+            }
+            SampleRing concealment = profileConcealment[p.ordinal()];
+            writer.println(prefix + "    " + p + ": jitterBufferMs mean=" + format(buffer.mean(buffer.size()))
+                    + " max=" + format(buffer.max())
+                    + " concealmentRatio mean=" + format(concealment.mean(concealment.size()))
+                    + " (" + buffer.size() + " samples)");
+        }
+        StringBuilder alarms = new StringBuilder(prefix).append("  alarms:");
+        for (Alarm alarm : Alarm.values()) {
+            if (alarmRaised[alarm.ordinal()]) {
+                alarms.append(' ').append(alarm);
+            }
+        }
+        writer.println(alarms);
+    }
+
+    private static String format(double value) {
+        return Double.isNaN(value) ? "-" : String.format(Locale.US, "%.3f", value);
+    }
+}
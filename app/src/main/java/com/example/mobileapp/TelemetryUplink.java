@@ -0,0 +1,196 @@
+package com.example.mobileapp;
+
+import android.content.Context;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Телеметрия клиента для операторов: раз в SAMPLE_INTERVAL_MS снимается сводка качества приёма
+// (потери, джиттер, сокрытие из getStats), число переподключений, заряд батареи и RSSI Wi-Fi.
+// Сводки копятся в пакеты и уходят по управляющему сокету кадром OP_TELEMETRY
+// (12 байт на сводку, около 150 байт в минуту на устройство).
+// Пока очередь сокета не опустела ниже лимита, отправка откладывается с растущей задержкой;
+// при переполнении выбрасываются самые старые пакеты, отправитель не блокируется никогда
+public class TelemetryUplink {
+    private static final long SAMPLE_INTERVAL_MS = 5000;
+    private static final int SAMPLES_PER_BATCH = 12; // пакет в минуту
+    // Пакеты, ждущие отправки (10 минут); дальше перезаписываются самые старые
+    private static final int MAX_PENDING_BATCHES = 10;
+    // Управляющие команды важнее: телеметрия не встаёт в очередь сокета поверх них
+    private static final long QUEUE_LIMIT_BYTES = 1024;
+    private static final long BACKOFF_MAX_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long DUMP_TIMEOUT_MS = 500;
+
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "telemetry");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final WebRTCClient webRTCClient;
+    private final BatteryManager batteryManager;
+    private final WifiManager wifiManager;
+
+    private volatile ControlChannel channel;
+
+    // Дальше — только поток телеметрии.
+    // Кольцо пакетов: pending[head] — самый старый, pending[(head + count) % N] — заполняемый
+    private final TelemetryBatch[] pending = new TelemetryBatch[MAX_PENDING_BATCHES + 1];
+    private int head;
+    private int count;
+    private int lastControlReconnects;
+    private int lastMediaReconnects;
+    private long backoffMs;
+    private long nextSendAtMs;
+    private long sentSamples;
+    private long droppedSamples;
+    private long sentBytes;
+    private ScheduledFuture<?> sampleFuture;
+
+    public TelemetryUplink(Context context, WebRTCClient webRTCClient) {
+        Context app = context.getApplicationContext();
+        this.webRTCClient = webRTCClient;
+        this.batteryManager = (BatteryManager) app.getSystemService(Context.BATTERY_SERVICE);
+        this.wifiManager = (WifiManager) app.getSystemService(Context.WIFI_SERVICE);
+        for (int i = 0; i < pending.length; i++) {
+            pending[i] = new TelemetryBatch(SAMPLES_PER_BATCH);
+        }
+    }
+
+    // Канал, по которому уходят пакеты; null — сбор останавливается, накопленное ждёт нового канала
+    public void setChannel(ControlChannel channel) {
+        this.channel = channel;
+        scheduler.execute(() -> {
+            if (channel == null) {
+                if (sampleFuture != null) {
+                    sampleFuture.cancel(false);
+                    sampleFuture = null;
+                }
+                return;
+            }
+            // Переподключения считаются с момента, когда канал передан телеметрии
+            lastControlReconnects = channel.getReconnectCount();
+            lastMediaReconnects = webRTCClient.getReconnectCount();
+            backoffMs = 0;
+            nextSendAtMs = 0;
+            if (sampleFuture == null) {
+                sampleFuture = scheduler.scheduleWithFixedDelay(this::sample,
+                        SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private void sample() {
+        ControlChannel current = channel;
+        int controlReconnects = current != null ? current.getReconnectCount() : lastControlReconnects;
+        int mediaReconnects = webRTCClient.getReconnectCount();
+        int reconnects = (controlReconnects - lastControlReconnects) + (mediaReconnects - lastMediaReconnects);
+        lastControlReconnects = controlReconnects;
+        lastMediaReconnects = mediaReconnects;
+
+        WebRTCClient.State state = webRTCClient.getState();
+        double loss = Double.NaN;
+        double jitter = Double.NaN;
+        double concealment = Double.NaN;
+        if (state == WebRTCClient.State.CONNECTED) {
+            // Средние по отсчётам StatsSampler за интервал сводки
+            StatsSampler stats = webRTCClient.getStatsSampler();
+            int samples = (int) (SAMPLE_INTERVAL_MS / 1000);
+            loss = stats.mean(StatsSampler.LOSS_RATIO, samples);
+            jitter = stats.mean(StatsSampler.JITTER_MS, samples);
+            concealment = stats.mean(StatsSampler.CONCEALMENT_RATIO, samples);
+        }
+
+        TelemetryBatch batch = pending[(head + count) % pending.length];
+        batch.add(System.currentTimeMillis(), loss, jitter, concealment,
+                reconnects, batteryPercent(), rssiDbm(), state.ordinal());
+        if (batch.isFull()) {
+            seal();
+        }
+        flush();
+    }
+
+    // Заполненный пакет становится в очередь; при переполнении самый старый выбрасывается
+    private void seal() {
+        if (count == MAX_PENDING_BATCHES) {
+            TelemetryBatch oldest = pending[head];
+            droppedSamples += oldest.size();
+            EventJournal.get().record(EventJournal.Event.TELEMETRY_DROPPED, oldest.size());
+            oldest.clear();
+            head = (head + 1) % pending.length;
+            count--;
+        }
+        count++;
+        pending[(head + count) % pending.length].clear();
+    }
+
+    private void flush() {
+        ControlChannel current = channel;
+        long now = SystemClock.elapsedRealtime();
+        if (count == 0 || current == null || now < nextSendAtMs) {
+            return;
+        }
+        while (count > 0) {
+            long queued = current.queuedBytes();
+            if (queued < 0) {
+                return; // нет соединения: ждём переподключения без задержки
+            }
+            if (queued > QUEUE_LIMIT_BYTES) {
+                backoffMs = backoffMs == 0 ? SAMPLE_INTERVAL_MS : Math.min(BACKOFF_MAX_MS, backoffMs * 2);
+                nextSendAtMs = now + backoffMs;
+                EventJournal.get().record(EventJournal.Event.TELEMETRY_BACKOFF, queued, backoffMs);
+                return;
+            }
+            TelemetryBatch batch = pending[head];
+            if (!current.sendTelemetry(batch, System.currentTimeMillis())) {
+                return; // текстовый протокол или сокет закрылся
+            }
+            sentSamples += batch.size();
+            sentBytes += 5 + (long) batch.size() * ControlProtocol.TELEMETRY_RECORD_SIZE; // заголовок и число сводок
+            EventJournal.get().record(EventJournal.Event.TELEMETRY_SENT, batch.size(), queued);
+            batch.clear();
+            head = (head + 1) % pending.length;
+            count--;
+        }
+        backoffMs = 0;
+    }
+
+    private int batteryPercent() {
+        return batteryManager != null
+                ? batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY)
+                : TelemetryBatch.UNKNOWN_BATTERY;
+    }
+
+    @SuppressWarnings("deprecation")
+    private int rssiDbm() {
+        if (wifiManager == null) {
+            return TelemetryBatch.UNKNOWN_RSSI;
+        }
+        WifiInfo info = wifiManager.getConnectionInfo();
+        return info != null ? info.getRssi() : TelemetryBatch.UNKNOWN_RSSI;
+    }
+
+    // Снимок берётся в потоке телеметрии; dumpsys ждёт его не дольше DUMP_TIMEOUT_MS
+    public void dump(String prefix, PrintWriter writer) {
+        try {
+            writer.println(scheduler.submit(() -> prefix + "Telemetry: sent=" + sentSamples
+                    + " samples (" + sentBytes + " B) dropped=" + droppedSamples
+                    + " pending=" + count + " batches backoff=" + backoffMs + "ms")
+                    .get(DUMP_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            writer.println(prefix + "Telemetry busy: " + e);
+        }
+    }
+}
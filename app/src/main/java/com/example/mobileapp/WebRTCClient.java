@@ -1,262 +1,1420 @@
 package com.example.mobileapp;
 
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
 import android.util.Log;
 
-import org.webrtc.AudioSource;
 import org.webrtc.AudioTrack;
-import org.webrtc.DataChannel;
-import org.webrtc.IceCandidate;
-import org.webrtc.MediaConstraints;
 import org.webrtc.MediaStream;
-import org.webrtc.PeerConnection;
 import org.webrtc.PeerConnectionFactory;
-import org.webrtc.SdpObserver;
-import org.webrtc.SessionDescription;
-import org.webrtc.audio.JavaAudioDeviceModule;
-import org.webrtc.DefaultVideoDecoderFactory;
-import org.webrtc.DefaultVideoEncoderFactory;
-import org.webrtc.EglBase;
-
-import okhttp3.Call;
-import okhttp3.Callback;
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
-
-import java.io.IOException;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.HttpUrl;
 
-public class WebRTCClient {
+// Клиент приёма звука. Всё состояние сессий принадлежит одному потоку "webrtc-client":
+// публичные методы и колбэки сессий, сети и статистики только ставят команды в его очередь,
+// поэтому блокировок нет и ни один вызов не ждёт PeerConnection в вызывающем потоке.
+// Наружу состояние видно через volatile-поля (getState, getMediaStream) и StateListener
+public class WebRTCClient implements MediaSession.Listener, NetworkMonitor.Listener, StatsSampler.Listener {
     private static final String TAG = "WebRTC_Audio";
-    private PeerConnectionFactory peerConnectionFactory;
-    private PeerConnection peerConnection;
-    private AudioTrack audioTrack;
-    private MediaConstraints mediaConstraints;
-    private Context context;
-    private MediaStream currentMediaStream;
-    private PeerConnection.Observer peerConnectionObserver = new PeerConnectionObserver();
+    // Резервное соединение пересоздаётся, если пролежало дольше этого времени
+    private static final long STANDBY_MAX_AGE_MS = TimeUnit.MINUTES.toMillis(5);
+    // Новый резерв готовится не сразу после подключения, чтобы не мешать ему
+    private static final long STANDBY_REARM_DELAY_MS = 2000;
+    // После смены сети ждём, пока адреса устоятся
+    private static final long NETWORK_SETTLE_DELAY_MS = 500;
+    // Период опроса getStats принимаемого потока
+    private static final long STATS_INTERVAL_MS = 1000;
+    // Приём приостанавливается, если устройство не адресовано дольше этого времени
+    private static final long SUSPEND_HOLD_OFF_MS = 3000;
+    // Сколько ждём подтверждения паузы от сервера, прежде чем отменить её и принимать поток дальше
+    private static final long PAUSE_ACK_TIMEOUT_MS = 500;
+    // Целевое время от команды до первых пакетов после паузы
+    private static final long RESUME_TARGET_MS = 300;
+    // Сколько ждём первых пакетов устойчивой сессии, прежде чем отказаться от переключения
+    private static final long RESILIENCE_SWITCH_TIMEOUT_MS = 5000;
+    // Сколько dumpsys ждёт снимка состояния из потока клиента
+    private static final long DUMP_TIMEOUT_MS = 500;
+    // Горячий резерв: порог тишины сторожа RTP (быстрый — после потери управляющего сокета),
+    // сколько ждём восстановления ICE перед переключением, задержки подготовки нового резерва
+    private static final long RTP_STALL_MS = 1000;
+    private static final long RTP_STALL_FAST_MS = 300;
+    private static final long FAILOVER_ICE_GRACE_MS = 500;
+    private static final long BACKUP_REARM_DELAY_MS = 2000;
+    private static final long BACKUP_RETRY_MS = 5000;
+    // Причины переключения на резерв (журнал событий)
+    private static final int FAILOVER_ICE = 0;
+    private static final int FAILOVER_RTP = 1;
+    private static final int FAILOVER_SOCKET = 2;
+
+    // Защита от потерь (Opus FEC, RED, NACK): выключена, включается по тревоге потерь или всегда
+    public enum ResilienceMode {
+        OFF,
+        ADAPTIVE,
+        ALWAYS
+    }
+
+    // Состояние сессии приёма, как его видит UI
+    public enum State {
+        IDLE,        // нет сессии
+        CONNECTING,  // offer отправлен, ICE ещё не соединился
+        CONNECTED,
+        RECOVERING,  // связь прервалась, идёт ICE restart или пересборка
+        PAUSING,     // ждём MEDIA_PAUSED от сервера
+        PAUSED       // сервер не пересылает поток, PeerConnection жив
+    }
+
+    public interface StateListener {
+        // Вызывается в потоке клиента; обновление экрана нужно передать в UI-поток
+        void onStateChanged(State state);
+    }
+
+    public interface ConnectCallback {
+        // Вызываются в потоке клиента, ровно один из двух
+        void onConnected();
+
+        void onError(String message);
+    }
+
+    public interface FailoverListener {
+        // Вызывается в потоке клиента: резервный сервер стал основным, новый резерв не задан
+        void onFailover(String promotedBaseUrl);
+    }
+
+    public interface MediaPauseSignal {
+        // resource — путь ресурса WHEP (MediaSession.getResourcePath), пауза касается только его.
+        // false — сигнал не отправлен (нет соединения или сервер не поддерживает паузу)
+        boolean sendMediaPause(String resource, boolean paused);
+    }
+
+    // Состояние приёма, пока устройство не адресовано. Сессия WHEP на паузе не закрывается:
+    // сервер без поддержки паузы просто продолжает слать поток в выключенный трек
+    private enum Reception {
+        ACTIVE,
+        PAUSE_REQUESTED, // ждём MEDIA_PAUSED от сервера
+        PAUSED           // сервер не пересылает поток, PeerConnection жив
+    }
+
+    // Читаются из любого потока, пишутся только в потоке клиента
+    private volatile AudioTrack audioTrack;
+    private volatile MediaStream remoteStream;
+    private volatile boolean audioEnabled = true;
+    private volatile State state = State.IDLE;
+    private volatile String activeChannel;
+    private volatile StateListener stateListener;
+    private volatile MediaPauseSignal pauseSignal;
+    private volatile PlayoutProfile playoutProfile;
+    private volatile ResilienceMode resilienceMode;
+    // Восстановления ICE и пересборки сессий (читается телеметрией)
+    private volatile int reconnectCount;
+    private volatile boolean failoverEnabled;
+    private volatile FailoverListener failoverListener;
+
+    // Дальше — только поток клиента
+    // Время восстановления связи (от обрыва до повторного соединения ICE), мс
+    private final SampleRing recoveryMs = new SampleRing(64);
+    private long interruptedAtMs;
+    private int rebuildCount;
+    private MediaSession activeSession;
+    private MediaSession standbySession;
+    private String standbyUrl;
+    private ScheduledFuture<?> standbyRefresh;
+    // Сессии, у которых ICE сейчас соединён
+    private final Set<MediaSession> iceConnected = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<ConnectCallback> connectCallbacks = new ArrayList<>();
+    private Reception reception = Reception.ACTIVE;
+    private ScheduledFuture<?> pauseAckTimer;
+    // Звук и приостановка приёма без звука: ручное переключение и команды сервера одним путём
+    private final AudioGate audioGate = new AudioGate(new ReceptionHost(), SUSPEND_HOLD_OFF_MS);
+    private long resumeStartNanos;
+    // Время возобновления приёма (от команды до первых пакетов), мс
+    private final SampleRing resumeMs = new SampleRing(64);
+    private int resumeMissCount;
+    // Каналы (пути потоков на сервере): неактивные держатся подключёнными с выключенным треком,
+    // а сервер по MEDIA_PAUSE их ресурса WHEP не пересылает им поток. Переключение — MEDIA_RESUME
+    // нужного ресурса и смена включённого трека, без нового согласования. Сервер без паузы
+    // продолжает слать поток ожидающим каналам: он принимается и декодируется впустую
+    private final List<String> channelUrls = new ArrayList<>();
+    private final Map<String, MediaSession> parkedChannels = new HashMap<>();
+    // Пауза пересылки каналов в ожидании: false — запрошена, true — сервер подтвердил
+    private final Map<MediaSession, Boolean> parkPause = new IdentityHashMap<>();
+    // Время переключения канала (от вызова до включения трека или первых пакетов после паузы), мкс
+    private final SampleRing channelSwitchUs = new SampleRing(64);
+    private long channelSwitchStartNanos;
+    // ADAPTIVE: потери превысили порог, до отключения новые сессии создаются устойчивыми
+    private boolean resilienceTriggered;
+    // Устойчивая сессия, которая подключается параллельно активной (make-before-break)
+    private MediaSession switchingSession;
+    private MediaStream switchingStream;
+    private ScheduledFuture<?> switchTimeout;
+    private int resilienceSwitchCount;
+    // Горячий резерв на другом сервере: сессия подключена, трек выключен, пересылка приостановлена
+    private String backupBaseUrl;
+    private MediaPauseSignal backupSignal;
+    private MediaSession backupSession;
+    private boolean backupPauseRequested;
+    private boolean backupPaused;
+    private ScheduledFuture<?> backupSync;
+    private ScheduledFuture<?> failoverCheck;
+    // Признаки отказа основного сервера
+    private boolean controlLost;
+    private boolean mediaStalled;
+    // Время переключения (от решения до первых пакетов резерва), мс
+    private long failoverStartNanos;
+    private final SampleRing failoverMs = new SampleRing(64);
+    private int failoverCount;
+
+    private final SharedPreferences prefs;
+    private final NetworkMonitor networkMonitor;
+    private final StatsSampler statsSampler = new StatsSampler(STATS_INTERVAL_MS, this);
+    // Очередь команд клиента; главный поток не блокируется
+    private final ScheduledExecutorService executor =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "webrtc-client"));
 
     public WebRTCClient(Context context) {
-        this.context = context;
-        initializePeerConnectionFactory();
+        prefs = context.getSharedPreferences("webrtc", Context.MODE_PRIVATE);
+        playoutProfile = PlayoutProfile.fromName(prefs.getString("playout_profile", null));
+        resilienceMode = resilienceModeFromName(prefs.getString("resilience_mode", null));
+        failoverEnabled = prefs.getBoolean("failover", false);
+        networkMonitor = new NetworkMonitor(context, this);
+        networkMonitor.start();
+    }
+
+    public void setStateListener(StateListener listener) {
+        stateListener = listener;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    // Держит наготове PeerConnection с готовым offer и собранными кандидатами,
+    // чтобы по касанию пропуска оставалось только отправить offer
+    public void prepareStandby(String serverUrl) {
+        executor.execute(() -> {
+            standbyUrl = serverUrl;
+            scheduleStandbyRefresh(0);
+        });
     }
 
     public void startConnectionViaHttp(String serverUrl) {
-        createPeerConnection(serverUrl);
+        startConnectionViaHttp(serverUrl, null);
+    }
 
-        peerConnection.createOffer(new SdpObserverImpl() {
-            @Override
-            public void onCreateSuccess(SessionDescription sessionDescription) {
-                peerConnection.setLocalDescription(new SdpObserverImpl(), sessionDescription);
+    // callback узнает, когда соединится ICE или почему подключиться не удалось
+    public void startConnectionViaHttp(String serverUrl, ConnectCallback callback) {
+        executor.execute(() -> connect(serverUrl, callback));
+    }
 
-                // Отправка offer на сервер через HTTP
-                sendSdpToServer(sessionDescription, serverUrl);
+    private void connect(String serverUrl, ConnectCallback callback) {
+        if (callback != null) {
+            connectCallbacks.add(callback);
+        }
+        PeerConnectionFactory factory = awaitFactory();
+        if (factory == null) {
+            failConnectCallbacks("PeerConnectionFactory недоступна");
+            return;
+        }
+        if (activeSession != null) {
+            // Клиент живёт дольше Activity: соединение могло остаться после её пересоздания
+            if (serverUrl.equals(activeSession.getStreamUrl())) {
+                Log.d(TAG, "Соединение уже установлено: " + serverUrl);
+                if (iceConnected.contains(activeSession)) {
+                    completeConnectCallbacks();
+                }
+                return;
+            }
+            closeSession(activeSession);
+            activeSession = null;
+        }
+        MediaSession session = takeStandby(serverUrl);
+        if (session != null) {
+            Log.d(TAG, "Используется резервное соединение (готово: " + session.isWarm() + ")");
+        } else {
+            session = new MediaSession(factory, serverUrl, playoutProfile, wantResilience(), this);
+            if (!session.prepare()) {
+                closeSession(session);
+                failConnectCallbacks("Не удалось подготовить offer");
+                publishState();
+                return;
             }
-        }, mediaConstraints);
+        }
+        activeSession = session;
+        channelSwitchStartNanos = 0;
+        standbyUrl = serverUrl;
+        reception = Reception.ACTIVE;
+        scheduleStandbyRefresh(STANDBY_REARM_DELAY_MS);
+        session.traceJoin();
+        session.connect();
+        statsSampler.start(session);
+        audioGate.arm(); // пересборка без звука: новая сессия тоже не нужна
+        syncParkedChannels();
+        armRtpWatchdog();
+        scheduleBackupSync(BACKUP_REARM_DELAY_MS);
+        publishState();
+    }
+
+    private void completeConnectCallbacks() {
+        if (connectCallbacks.isEmpty()) {
+            return;
+        }
+        List<ConnectCallback> callbacks = new ArrayList<>(connectCallbacks);
+        connectCallbacks.clear();
+        for (ConnectCallback callback : callbacks) {
+            callback.onConnected();
+        }
+    }
+
+    private void failConnectCallbacks(String message) {
+        if (connectCallbacks.isEmpty()) {
+            return;
+        }
+        List<ConnectCallback> callbacks = new ArrayList<>(connectCallbacks);
+        connectCallbacks.clear();
+        for (ConnectCallback callback : callbacks) {
+            callback.onError(message);
+        }
+    }
+
+    // Состояние для UI выводится из внутреннего; слушатель узнаёт только об изменениях
+    private void publishState() {
+        State next;
+        if (activeSession == null) {
+            next = State.IDLE;
+        } else if (reception == Reception.PAUSE_REQUESTED) {
+            next = State.PAUSING;
+        } else if (reception == Reception.PAUSED) {
+            next = State.PAUSED;
+        } else if (interruptedAtMs != 0) {
+            next = State.RECOVERING;
+        } else {
+            next = iceConnected.contains(activeSession) ? State.CONNECTED : State.CONNECTING;
+        }
+        activeChannel = activeSession != null ? activeSession.getStreamUrl() : standbyUrl;
+        if (next == state) {
+            return;
+        }
+        state = next;
+        EventJournal.get().record(EventJournal.Event.CLIENT_STATE, next.ordinal());
+        StateListener listener = stateListener;
+        if (listener != null) {
+            listener.onStateChanged(next);
+        }
     }
 
-    private void sendSdpToServer(SessionDescription offer, String serverUrl) {
-        OkHttpClient client = new OkHttpClient();
+    // Вместе с PeerConnection освобождаются его потоки: трек закрытой сессии больше не трогаем
+    private void closeSession(MediaSession session) {
+        iceConnected.remove(session);
+        parkPause.remove(session);
+        MediaStream stream = session.getRemoteStream();
+        if (stream != null && stream == remoteStream) {
+            audioTrack = null;
+            remoteStream = null;
+        }
+        session.close();
+    }
 
-        RequestBody body = RequestBody.create(offer.description, MediaType.get("application/sdp"));
-        Request request = new Request.Builder()
-                .url(serverUrl + "/whep")  // укажи актуальный путь к ресурсу на WHEP-сервере
-                .post(body)
-                .addHeader("Content-Type", "application/sdp")
-                .addHeader("Accept", "application/sdp")
-                .build();
+    // Полные URL потоков всех каналов; слышен один, остальные подключены и ждут
+    public void setChannels(List<String> streamUrls) {
+        List<String> urls = new ArrayList<>(streamUrls);
+        executor.execute(() -> {
+            channelUrls.clear();
+            channelUrls.addAll(urls);
+            syncParkedChannels();
+        });
+    }
 
-        client.newCall(request).enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                Log.e(TAG, "Ошибка при отправке SDP offer: " + e.getMessage());
+    // Подключает недостающие каналы и закрывает лишние. Пока есть активная сессия
+    private void syncParkedChannels() {
+        PeerConnectionFactory factory = awaitFactory();
+        if (factory == null) {
+            return;
+        }
+        // На паузе приёма каналы не закрываются: возобновление не должно ждать их подготовки
+        boolean receiving = activeSession != null;
+        Iterator<Map.Entry<String, MediaSession>> it = parkedChannels.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, MediaSession> entry = it.next();
+            if (!receiving || !channelUrls.contains(entry.getKey())
+                    || entry.getKey().equals(activeSession.getStreamUrl())) {
+                closeSession(entry.getValue());
+                it.remove();
             }
+        }
+        if (!receiving) {
+            return;
+        }
+        for (String url : channelUrls) {
+            if (url.equals(activeSession.getStreamUrl()) || parkedChannels.containsKey(url)) {
+                continue;
+            }
+            MediaSession parked = new MediaSession(factory, url, playoutProfile, wantResilience(), this);
+            if (parked.prepare()) {
+                parkedChannels.put(url, parked);
+                parked.connect(); // пауза пересылки запрашивается, когда соединится ICE
+                Log.d(TAG, "Канал подключён в ожидании: " + url);
+            } else {
+                closeSession(parked);
+            }
+        }
+    }
 
-            @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (!response.isSuccessful()) {
-                    Log.e(TAG, "Сервер вернул ошибку: " + response.code());
-                    return;
-                }
+    // Делает слышимым канал streamUrl. Если он уже подключён в ожидании — возобновляет пересылку
+    // его ресурса и меняет включённый трек (без нового согласования); иначе подключается заново.
+    // Можно вызывать из любого потока (UI, поток сокета)
+    public void selectChannel(String streamUrl) {
+        long start = System.nanoTime();
+        executor.execute(() -> switchChannel(streamUrl, start));
+    }
+
+    private void switchChannel(String streamUrl, long startNanos) {
+        if (activeSession == null) {
+            // Канал применится при следующем подключении
+            standbyUrl = streamUrl;
+            scheduleStandbyRefresh(0);
+            publishState();
+            return;
+        }
+        if (streamUrl.equals(activeSession.getStreamUrl())) {
+            return;
+        }
+        MediaSession target = parkedChannels.remove(streamUrl);
+        if (target == null) {
+            if (reception != Reception.ACTIVE) {
+                // Канал применится при возобновлении приёма (resumeReception)
+                standbyUrl = streamUrl;
+                publishState();
+                return;
+            }
+            Log.d(TAG, "Канал не подключён заранее, полное подключение: " + streamUrl);
+            connect(streamUrl, null);
+            return;
+        }
+        MediaSession previous = activeSession;
+        Boolean targetPaused = parkPause.remove(target);
+        activeSession = target;
+        parkedChannels.put(previous.getStreamUrl(), previous);
+        interruptedAtMs = 0;
+        standbyUrl = streamUrl;
+        scheduleStandbyRefresh(STANDBY_REARM_DELAY_MS);
+        previous.setRtpWatchdog(0);
+        muteSession(previous);
+        MediaStream stream = target.getRemoteStream();
+        if (stream != null) {
+            setRemoteStream(stream);
+        } else {
+            audioTrack = null; // трек канала подключится в onRemoteStream
+            remoteStream = null;
+        }
+        if (reception != Reception.ACTIVE) {
+            // Приём на паузе: меняются только роли сессий, пересылка обоих каналов остаётся остановленной.
+            // Подтверждение паузы прежнего канала, если оно ещё не пришло, найдёт его по ресурсу
+            parkPause.put(previous, reception == Reception.PAUSED);
+            cancelPauseAckTimer();
+            reception = Reception.ACTIVE;
+            if (Boolean.TRUE.equals(targetPaused)) {
+                reception = Reception.PAUSED;
+                statsSampler.stop();
+            } else {
+                statsSampler.start(target);
+                suspend();
+            }
+        } else {
+            pauseParked(previous);
+            statsSampler.start(target);
+            channelSwitchStartNanos = startNanos;
+            if (targetPaused == null) {
+                recordChannelSwitch(System.nanoTime()); // канал и так принимал поток
+            } else if (resumeForwarding(target)) {
+                target.awaitMediaResume(); // время переключения запишется по первым пакетам
+            } else {
+                // Канал управления потерян: сервер не узнает о возобновлении, пересобираем сессию
+                channelSwitchStartNanos = 0;
+                Log.w(TAG, "Не удалось возобновить пересылку канала, переподключение");
+                rebuild(target);
+                return;
+            }
+        }
+        armRtpWatchdog();
+        scheduleBackupSync(BACKUP_REARM_DELAY_MS); // резерв переходит на тот же канал
+        publishState();
+        Log.d(TAG, "Канал переключён на " + streamUrl);
+    }
 
-                try {
-                    String sdpAnswer = response.body().string();
-                    SessionDescription answer = new SessionDescription(SessionDescription.Type.ANSWER, sdpAnswer.replace("\\n", "\n"));
-                    //Log.d(TAG, "Получен SDP-ответ: " + sdpAnswer);
+    private void recordChannelSwitch(long flowingAtNanos) {
+        long elapsedUs = (flowingAtNanos - channelSwitchStartNanos) / 1000;
+        channelSwitchStartNanos = 0;
+        channelSwitchUs.add(System.currentTimeMillis(), elapsedUs);
+        Log.d(TAG, "Канал слышен через " + elapsedUs + " мкс");
+    }
 
-                    peerConnection.setRemoteDescription(new SdpObserverImpl(), answer);
-                } catch (Exception e) {
-                    Log.e(TAG, "Ошибка обработки SDP ответа: " + e.getMessage());
-                }
+    // Канал в ожидании: сервер перестаёт пересылать поток его ресурса. Без паузы на сервере
+    // поток принимается в выключенный трек, переключение от этого медленнее не становится
+    private void pauseParked(MediaSession session) {
+        String resource = session.getResourcePath();
+        MediaPauseSignal signal = pauseSignal;
+        if (resource == null || signal == null || parkPause.containsKey(session)) {
+            return;
+        }
+        if (signal.sendMediaPause(resource, true)) {
+            parkPause.put(session, false);
+        }
+    }
+
+    private boolean resumeForwarding(MediaSession session) {
+        String resource = session.getResourcePath();
+        MediaPauseSignal signal = pauseSignal;
+        return resource != null && signal != null && signal.sendMediaPause(resource, false);
+    }
+
+    private MediaSession parkedByResource(String resource) {
+        if (resource == null) {
+            return null;
+        }
+        for (MediaSession session : parkedChannels.values()) {
+            if (resource.equals(session.getResourcePath())) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    public String getActiveChannel() {
+        return activeChannel;
+    }
+
+    // Выключенный трек не попадает в микшер воспроизведения. Пакеты по-прежнему принимаются
+    // и декодируются: libwebrtc отбрасывает звук только в микшере
+    private static void muteSession(MediaSession session) {
+        MediaStream stream = session.getRemoteStream();
+        if (stream != null && !stream.audioTracks.isEmpty()) {
+            stream.audioTracks.get(0).setEnabled(false);
+        }
+    }
+
+    private void closeParkedChannels() {
+        for (MediaSession session : parkedChannels.values()) {
+            closeSession(session);
+        }
+        parkedChannels.clear();
+    }
+
+    // Фабрика создаётся в фоне при старте приложения (RtcEngine)
+    private static PeerConnectionFactory awaitFactory() {
+        try {
+            PeerConnectionFactory factory = RtcEngine.get().awaitFactory();
+            if (factory == null) {
+                Log.e(TAG, "PeerConnectionFactory недоступна");
+            }
+            return factory;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private MediaSession takeStandby(String serverUrl) {
+        MediaSession session = standbySession;
+        standbySession = null;
+        if (session == null) {
+            return null;
+        }
+        if (!isStandbyUsable(session, serverUrl)) {
+            closeSession(session);
+            return null;
+        }
+        return session;
+    }
+
+    private boolean isStandbyUsable(MediaSession session, String serverUrl) {
+        return serverUrl.equals(session.getStreamUrl())
+                && session.getProfile() == playoutProfile
+                && session.isResilient() == wantResilience()
+                && session.ageMs() < STANDBY_MAX_AGE_MS;
+    }
+
+    private void scheduleStandbyRefresh(long delayMs) {
+        if (standbyRefresh != null) {
+            standbyRefresh.cancel(false);
+        }
+        standbyRefresh = executor.schedule(this::refreshStandby, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Профиль применяется к следующему подключению: буфер джиттера задаётся при создании
+    // PeerConnection, а параметры Opus — в offer. Резерв сразу пересоздаётся с новым профилем
+    public void setPlayoutProfile(PlayoutProfile profile) {
+        playoutProfile = profile;
+        prefs.edit().putString("playout_profile", profile.name()).apply();
+        Log.d(TAG, "Профиль воспроизведения: " + profile);
+        executor.execute(() -> scheduleStandbyRefresh(0));
+    }
+
+    public PlayoutProfile getPlayoutProfile() {
+        return playoutProfile;
+    }
+
+    // Пересоздаёт резерв, если его нет, он устарел или относится к другому серверу
+    private void refreshStandby() {
+        PeerConnectionFactory factory = awaitFactory();
+        if (factory == null || standbyUrl == null) {
+            return;
+        }
+        if (standbySession != null && isStandbyUsable(standbySession, standbyUrl)) {
+            scheduleStandbyRefresh(STANDBY_MAX_AGE_MS - standbySession.ageMs());
+            return;
+        }
+        if (standbySession != null) {
+            closeSession(standbySession);
+        }
+        standbySession = new MediaSession(factory, standbyUrl, playoutProfile, wantResilience(), this);
+        scheduleStandbyRefresh(STANDBY_MAX_AGE_MS);
+        if (!standbySession.prepare()) {
+            Log.e(TAG, "Не удалось подготовить резервное соединение");
+        } else {
+            Log.d(TAG, "Резервное соединение подготовлено: " + standbyUrl);
+        }
+    }
+
+    private void discardStandby() {
+        if (standbySession != null) {
+            closeSession(standbySession);
+            standbySession = null;
+        }
+    }
+
+    @Override
+    public void onNetworkChanged() {
+        executor.execute(() -> {
+            // Собранные кандидаты относятся к старым адресам
+            discardStandby();
+            scheduleStandbyRefresh(NETWORK_SETTLE_DELAY_MS);
+            // Сессии не ждут обрыва ICE: сразу перезапускаем его с новыми адресами
+            if (activeSession != null) {
+                activeSession.restartIce();
+            }
+            for (MediaSession session : parkedChannels.values()) {
+                session.restartIce();
             }
+            if (backupSession != null) {
+                backupSession.restartIce();
+            }
+        });
+    }
+
+    @Override
+    public void onNetworkLost() {
+        executor.execute(this::discardStandby);
+    }
+
+    @Override
+    public void onIceConnected(MediaSession session) {
+        executor.execute(() -> {
+            iceConnected.add(session);
+            if (session == backupSession) {
+                pauseBackup();
+                return;
+            }
+            if (parkedChannels.get(session.getStreamUrl()) == session) {
+                pauseParked(session);
+                return;
+            }
+            if (session != activeSession) {
+                return;
+            }
+            cancelFailoverCheck();
+            if (interruptedAtMs != 0) {
+                long elapsed = SystemClock.elapsedRealtime() - interruptedAtMs;
+                interruptedAtMs = 0;
+                recoveryMs.add(System.currentTimeMillis(), elapsed);
+                reconnectCount++;
+                Log.d(TAG, "Связь восстановлена за " + elapsed + " мс");
+            }
+            completeConnectCallbacks();
+            publishState();
         });
     }
 
-    private void initializePeerConnectionFactory() {
-        // 1. Инициализация WebRTC
-        PeerConnectionFactory.InitializationOptions options = PeerConnectionFactory.InitializationOptions.builder(context)
-                .setEnableInternalTracer(true)
-                .createInitializationOptions();
-        PeerConnectionFactory.initialize(options);
+    @Override
+    public void onIceInterrupted(MediaSession session) {
+        executor.execute(() -> {
+            iceConnected.remove(session);
+            if (session == activeSession && interruptedAtMs == 0) {
+                interruptedAtMs = SystemClock.elapsedRealtime();
+                publishState();
+            }
+            if (session == activeSession && failoverActive() && failoverCheck == null) {
+                // Короткий обрыв (роуминг) ICE часто переживает сам; подтверждённый другими признаками — нет
+                failoverCheck = executor.schedule(this::checkFailover,
+                        controlLost || mediaStalled ? 0 : FAILOVER_ICE_GRACE_MS, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
 
-        // 2. Создание модуля аудиоустройств
-        JavaAudioDeviceModule audioDeviceModule = JavaAudioDeviceModule.builder(context).createAudioDeviceModule();
+    // ICE restart не помог: закрываем сессию (DELETE) и подключаемся заново,
+    // по возможности через резервное соединение
+    @Override
+    public void onRecoveryFailed(MediaSession session) {
+        executor.execute(() -> rebuild(session));
+    }
 
-        // 3. Создание фабрики
-        PeerConnectionFactory.Options factoryOptions = new PeerConnectionFactory.Options();
-        peerConnectionFactory = PeerConnectionFactory.builder()
-                .setOptions(factoryOptions)
-                .setAudioDeviceModule(audioDeviceModule)
-                .setVideoDecoderFactory(new DefaultVideoDecoderFactory(EglBase.create().getEglBaseContext()))
-                .setVideoEncoderFactory(new DefaultVideoEncoderFactory(EglBase.create().getEglBaseContext(), true, true))
-                .createPeerConnectionFactory();
+    @Override
+    public void onConnectFailed(MediaSession session, String message) {
+        executor.execute(() -> {
+            if (session == switchingSession) {
+                abandonSwitch(session);
+            } else if (session == activeSession) {
+                activeSession = null;
+                closeSession(session);
+                statsSampler.stop();
+                closeParkedChannels();
+                audioTrack = null;
+                remoteStream = null;
+                failConnectCallbacks(message);
+                scheduleStandbyRefresh(0);
+                publishState();
+            } else if (parkedChannels.get(session.getStreamUrl()) == session) {
+                parkedChannels.remove(session.getStreamUrl());
+                closeSession(session);
+            } else if (session == backupSession) {
+                Log.w(TAG, "Резервный сервер не принял offer: " + message);
+                closeBackup();
+                scheduleBackupSync(BACKUP_RETRY_MS);
+            }
+        });
+    }
 
-        if (peerConnectionFactory == null) {
-            Log.e(TAG, "Ошибка создания PeerConnectionFactory!");
+    private void rebuild(MediaSession session) {
+        if (session == backupSession) {
+            closeBackup();
+            scheduleBackupSync(BACKUP_RETRY_MS);
+            return;
+        }
+        String url = session.getStreamUrl();
+        boolean parked = parkedChannels.get(url) == session;
+        if (parked) {
+            parkedChannels.remove(url);
+        } else if (session == activeSession) {
+            activeSession = null;
         } else {
-            Log.d(TAG, "PeerConnectionFactory успешно инициализирована.");
+            return;
+        }
+        rebuildCount++;
+        reconnectCount++;
+        closeSession(session);
+        if (parked) {
+            syncParkedChannels(); // канал в ожидании пересоздаётся отдельно от активного
+            return;
+        }
+        statsSampler.stop();
+        Log.w(TAG, "Пересборка WebRTC сессии: " + url);
+        connect(url, null);
+    }
+
+    // Снимок берётся в потоке клиента; dumpsys ждёт его не дольше DUMP_TIMEOUT_MS
+    public void dumpRecovery(String prefix, PrintWriter writer) {
+        try {
+            writer.print(executor.submit(() -> {
+                StringWriter out = new StringWriter();
+                writeRecovery(prefix, new PrintWriter(out));
+                return out.toString();
+            }).get(DUMP_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            writer.println(prefix + "WebRTC client busy: " + e);
+        }
+    }
+
+    private void writeRecovery(String prefix, PrintWriter writer) {
+        writer.println(prefix + "State: " + state);
+        writer.println(prefix + "ICE recovery: count=" + recoveryMs.size()
+                + " last=" + (long) recoveryMs.last()
+                + "ms mean=" + (long) recoveryMs.mean(recoveryMs.size())
+                + "ms max=" + (long) recoveryMs.max()
+                + "ms rebuilds=" + rebuildCount);
+        writer.println(prefix + "Resilience: mode=" + resilienceMode
+                + " triggered=" + resilienceTriggered
+                + " switches=" + resilienceSwitchCount
+                + " negotiated=" + (activeSession == null ? "-"
+                : SdpUtils.resilienceToString(activeSession.getNegotiatedResilience())));
+        writer.println(prefix + "Channels: active=" + (activeSession == null ? "-" : activeSession.getStreamUrl())
+                + " parked=" + parkedChannels.keySet()
+                + " paused=" + parkPause.size()
+                + " switches=" + channelSwitchUs.size()
+                + " lastUs=" + (long) channelSwitchUs.last()
+                + " maxUs=" + (long) channelSwitchUs.max());
+        writer.println(prefix + "Reception: " + reception + " resumes=" + resumeMs.size()
+                + " last=" + (long) resumeMs.last()
+                + "ms mean=" + (long) resumeMs.mean(resumeMs.size())
+                + "ms max=" + (long) resumeMs.max()
+                + "ms over " + RESUME_TARGET_MS + "ms=" + resumeMissCount);
+        writer.println(prefix + "Failover: enabled=" + failoverEnabled
+                + " backup=" + (backupSession == null ? "-" : backupSession.getStreamUrl())
+                + " ready=" + (backupSession != null && iceConnected.contains(backupSession))
+                + " paused=" + backupPaused
+                + " count=" + failoverCount
+                + " last=" + (long) failoverMs.last()
+                + "ms max=" + (long) failoverMs.max() + "ms");
+        writer.flush();
+    }
+
+    @Override
+    public void onAlarm(StatsSampler.Alarm alarm, boolean raised, double value) {
+        Log.w(TAG, "Качество приёма: " + alarm + (raised ? " тревога " : " норма ") + value);
+        if (alarm == StatsSampler.Alarm.PACKET_LOSS && raised && resilienceMode == ResilienceMode.ADAPTIVE) {
+            executor.execute(this::enableResilience);
         }
     }
 
-    public void createPeerConnection(String serverIpAddress) {
-        // Настройка MediaConstraints
-        mediaConstraints = new MediaConstraints();
-        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
-        mediaConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "false"));
+    public void setResilienceMode(ResilienceMode mode) {
+        resilienceMode = mode;
+        prefs.edit().putString("resilience_mode", mode.name()).apply();
+        Log.d(TAG, "Режим защиты от потерь: " + mode);
+        executor.execute(() -> {
+            scheduleStandbyRefresh(0);
+            if (mode == ResilienceMode.ALWAYS) {
+                enableResilience();
+            }
+        });
+    }
 
-        ArrayList<PeerConnection.IceServer> iceServers = new ArrayList<>(); //Пустой список ICE серверов
+    public ResilienceMode getResilienceMode() {
+        return resilienceMode;
+    }
 
-        // Создаем RTCConfig с этим сервером
-        PeerConnection.RTCConfiguration rtcConfig = new PeerConnection.RTCConfiguration(iceServers);
-        rtcConfig.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
+    private static ResilienceMode resilienceModeFromName(String name) {
+        if (name != null) {
+            for (ResilienceMode mode : ResilienceMode.values()) {
+                if (mode.name().equals(name)) {
+                    return mode;
+                }
+            }
+        }
+        return ResilienceMode.ADAPTIVE;
+    }
 
-        // Создаем PeerConnection
-        peerConnection = peerConnectionFactory.createPeerConnection(rtcConfig, peerConnectionObserver);
+    private boolean wantResilience() {
+        ResilienceMode mode = resilienceMode;
+        return mode == ResilienceMode.ALWAYS || (mode == ResilienceMode.ADAPTIVE && resilienceTriggered);
+    }
 
-        if (peerConnection == null) {
-            Log.e(TAG, "Не удалось создать PeerConnection! Возвращено null.");
+    // Параметры защиты задаются в offer, поэтому включить её в активной сессии нельзя:
+    // рядом поднимается устойчивая сессия и заменяет активную, как только пойдут пакеты
+    private void enableResilience() {
+        PeerConnectionFactory factory = awaitFactory();
+        if (factory == null) {
             return;
         }
+        if (resilienceMode == ResilienceMode.ADAPTIVE) {
+            resilienceTriggered = true;
+        }
+        if (activeSession == null || activeSession.isResilient() || switchingSession != null
+                || reception != Reception.ACTIVE || !wantResilience()) {
+            return;
+        }
+        MediaSession session = new MediaSession(factory, activeSession.getStreamUrl(), playoutProfile, true, this);
+        switchingSession = session;
+        switchingStream = null;
+        switchTimeout = executor.schedule(() -> abandonSwitch(session),
+                RESILIENCE_SWITCH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        scheduleStandbyRefresh(STANDBY_REARM_DELAY_MS); // резерв тоже станет устойчивым
+        Log.w(TAG, "Потери выше порога: подключается сессия с защитой от потерь");
+        if (!session.prepare()) {
+            abandonSwitch(session);
+            return;
+        }
+        session.connect();
+    }
 
-        // Создание MediaStream и добавление AudioTrack
-        currentMediaStream = peerConnectionFactory.createLocalMediaStream("stream1");
-        AudioSource audioSource = peerConnectionFactory.createAudioSource(mediaConstraints);
-        if (audioSource == null) {
-            Log.e(TAG, "Ошибка создания AudioSource!");
+    private void completeSwitch(MediaSession session) {
+        if (session != switchingSession) {
+            return;
+        }
+        MediaSession old = activeSession;
+        // Приём могли приостановить или отключить, пока шло переключение
+        if (reception != Reception.ACTIVE || old == null
+                || !old.getStreamUrl().equals(session.getStreamUrl())) {
+            abandonSwitch(session);
             return;
         }
+        MediaStream stream = switchingStream;
+        activeSession = session;
+        switchingSession = null;
+        switchingStream = null;
+        cancelSwitchTimeout();
+        resilienceSwitchCount++;
+        closeSession(old);
+        statsSampler.start(session);
+        if (stream != null) {
+            setRemoteStream(stream);
+        }
+        armRtpWatchdog();
+        publishState();
+        Log.d(TAG, "Переключено на сессию с защитой от потерь: "
+                + SdpUtils.resilienceToString(session.getNegotiatedResilience()));
+    }
 
-        audioTrack = peerConnectionFactory.createAudioTrack("audio", audioSource);
-        if (audioTrack == null) {
-            Log.e(TAG, "Ошибка создания AudioTrack!");
+    private void abandonSwitch(MediaSession session) {
+        if (session != switchingSession) {
             return;
         }
+        switchingSession = null;
+        switchingStream = null;
+        cancelSwitchTimeout();
+        closeSession(session);
+        Log.w(TAG, "Переключение на сессию с защитой от потерь отменено");
+    }
 
-        // Добавляем аудиотрек в поток
-        currentMediaStream.addTrack(audioTrack);
+    private void cancelSwitchTimeout() {
+        if (switchTimeout != null) {
+            switchTimeout.cancel(false);
+            switchTimeout = null;
+        }
+    }
 
-        Log.d(TAG, "WebRTC соединение создано.");
+    public int getReconnectCount() {
+        return reconnectCount;
     }
 
-    private class PeerConnectionObserver implements PeerConnection.Observer {
+    public StatsSampler getStatsSampler() {
+        return statsSampler;
+    }
 
-        @Override
-        public void onIceCandidatesRemoved(IceCandidate[] candidates) {
-            Log.d(TAG, "ICE candidates removed");
+    @Override
+    public void onRemoteStream(MediaSession session, MediaStream stream) {
+        executor.execute(() -> {
+            if (session == switchingSession) {
+                switchingStream = stream; // трек подключится при переключении
+            } else if (session == activeSession) {
+                setRemoteStream(stream);
+            } else if (parkedChannels.get(session.getStreamUrl()) == session) {
+                muteSession(session); // канал ждёт выбора
+            } else if (session == backupSession) {
+                muteSession(session); // резерв звучит только после переключения
+            }
+        });
+    }
+
+    private void setRemoteStream(MediaStream stream) {
+        remoteStream = stream;
+        AudioTrack track = stream.audioTracks.get(0);
+        audioTrack = track;
+        track.setEnabled(audioEnabled); // Новый поток (в т.ч. после пересборки) получает текущее состояние
+        Log.d(TAG, "Добавлен аудиопоток: " + track.id());
+    }
+
+    // Команда с управляющего канала или кнопка. Трек трогается только в потоке клиента: там же
+    // его закрывают вместе с сессией и заменяют в setRemoteStream. Задачи клиента не ждут сети
+    // (HTTP и ответы асинхронны), поэтому очередь почти не задерживает переключение звука.
+    // arrivalNanos — System.nanoTime() прихода команды
+    public void setAudioEnabled(boolean enabled, long arrivalNanos) {
+        executor.execute(() -> {
+            applyTrackEnabled(enabled);
+            audioGate.setEnabled(enabled, arrivalNanos);
+        });
+    }
+
+    public void setMediaPauseSignal(MediaPauseSignal signal) {
+        pauseSignal = signal;
+    }
+
+    private void cancelPauseAckTimer() {
+        if (pauseAckTimer != null) {
+            pauseAckTimer.cancel(false);
+            pauseAckTimer = null;
         }
+    }
 
+    private class ReceptionHost implements AudioGate.Host {
         @Override
-        public void onSignalingChange(PeerConnection.SignalingState signalingState) {
+        public boolean isReceiving() {
+            return reception == Reception.ACTIVE && activeSession != null;
         }
 
         @Override
-        public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
+        public boolean isSuspended() {
+            return reception != Reception.ACTIVE;
         }
 
         @Override
-        public void onIceConnectionReceivingChange(boolean receiving) {
+        public void suspend() {
+            WebRTCClient.this.suspend();
         }
 
         @Override
-        public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
+        public void resume(long arrivalNanos) {
+            resumeReception(arrivalNanos);
         }
 
         @Override
-        public void onIceCandidate(IceCandidate iceCandidate) {
-            Log.d(TAG, "New ICE candidate: " + iceCandidate.toString());
-            // Здесь можно отправить ICE кандидат на сервер
+        public Future<?> schedule(Runnable task, long delayMs) {
+            return executor.schedule(task, delayMs, TimeUnit.MILLISECONDS);
         }
+    }
 
-        @Override
-        public void onAddStream(MediaStream mediaStream) {
-            Log.d(TAG, "New media stream added: " + mediaStream.toString());
-            setRemoteStream(mediaStream);
+    // Сервер перестаёт пересылать поток, PeerConnection и ресурс WHEP остаются живыми.
+    // Без поддержки паузы (текстовый протокол, нет MEDIA_PAUSED) сессия не трогается: поток
+    // принимается в выключенный трек, зато включение звука мгновенное и резерв с каналами на месте.
+    // Направление трансивера не меняется: это потребовало бы нового согласования, а WHEP его не даёт
+    private void suspend() {
+        if (reception != Reception.ACTIVE || activeSession == null) {
+            return;
         }
+        String resource = activeSession.getResourcePath();
+        MediaPauseSignal signal = pauseSignal;
+        if (resource == null || signal == null || !signal.sendMediaPause(resource, true)) {
+            Log.d(TAG, "Пауза пересылки недоступна, поток принимается с выключенным треком");
+            return;
+        }
+        reception = Reception.PAUSE_REQUESTED;
+        armRtpWatchdog(); // без пересылки тишина ожидаема
+        pauseAckTimer = executor.schedule(this::onPauseAckTimeout, PAUSE_ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        publishState();
+    }
 
-        @Override
-        public void onRemoveStream(MediaStream mediaStream) {
+    // Сервер подтвердил паузу (MEDIA_PAUSED) активной сессии или канала в ожидании; вызывается
+    // в потоке сокета. resource — путь ресурса WHEP из подтверждения, null — всё устройство
+    public void onMediaPauseAck(String resource) {
+        executor.execute(() -> {
+            MediaSession parked = parkedByResource(resource);
+            if (parked != null) {
+                if (parkPause.containsKey(parked)) {
+                    parkPause.put(parked, true);
+                    parked.markPaused();
+                }
+                return;
+            }
+            if (reception != Reception.PAUSE_REQUESTED || activeSession == null
+                    || (resource != null && !resource.equals(activeSession.getResourcePath()))) {
+                return;
+            }
+            cancelPauseAckTimer();
+            reception = Reception.PAUSED;
+            statsSampler.stop(); // без пакетов сокрытие потерь подняло бы ложные тревоги
+            if (activeSession != null) {
+                activeSession.markPaused();
+            }
+            publishState();
+            Log.d(TAG, "Приём приостановлен сервером");
+        });
+    }
+
+    private void onPauseAckTimeout() {
+        pauseAckTimer = null;
+        if (reception != Reception.PAUSE_REQUESTED) {
+            return;
+        }
+        reception = Reception.ACTIVE;
+        // Сервер мог остановить пересылку позже таймаута: отменяем, чтобы не остаться без потока
+        if (activeSession != null) {
+            resumeForwarding(activeSession);
         }
+        armRtpWatchdog();
+        publishState();
+        Log.w(TAG, "Сервер не подтвердил паузу, поток принимается с выключенным треком");
+    }
 
-        @Override
-        public void onDataChannel(DataChannel dataChannel) {
+    private void resumeReception(long arrivalNanos) {
+        cancelPauseAckTimer();
+        Reception previous = reception;
+        if (previous == Reception.ACTIVE) {
+            return;
+        }
+        reception = Reception.ACTIVE;
+        MediaSession session = activeSession;
+        resumeStartNanos = previous == Reception.PAUSE_REQUESTED ? 0 : arrivalNanos;
+        switch (previous) {
+            case PAUSE_REQUESTED:
+                // Сервер мог успеть остановить пересылку до отмены
+                if (session != null) {
+                    resumeForwarding(session);
+                }
+                break;
+            case PAUSED:
+                if (session == null) {
+                    break;
+                }
+                if (resumeForwarding(session)) {
+                    statsSampler.start(session);
+                    session.awaitMediaResume();
+                } else {
+                    // Канал управления потерян: сервер не узнает о возобновлении, пересобираем сессию
+                    Log.w(TAG, "Не удалось возобновить пересылку, переподключение");
+                    rebuild(session);
+                }
+                break;
+            default:
+                break;
         }
+        armRtpWatchdog();
+        publishState();
+        // Канал выбрали, пока приём стоял на паузе
+        if (activeSession != null && standbyUrl != null && !standbyUrl.equals(activeSession.getStreamUrl())) {
+            switchChannel(standbyUrl, arrivalNanos);
+        }
+    }
 
-        @Override
-        public void onRenegotiationNeeded() {
+    @Override
+    public void onMediaFlowing(MediaSession session) {
+        long flowingAt = System.nanoTime();
+        executor.execute(() -> {
+            if (session == switchingSession) {
+                completeSwitch(session);
+                return;
+            }
+            if (session == activeSession) {
+                mediaStalled = false;
+                if (failoverStartNanos != 0) {
+                    recordFailover(flowingAt);
+                }
+                if (channelSwitchStartNanos != 0) {
+                    recordChannelSwitch(flowingAt);
+                }
+            }
+            if (session != activeSession || resumeStartNanos == 0) {
+                return;
+            }
+            long elapsed = (flowingAt - resumeStartNanos) / 1_000_000;
+            resumeStartNanos = 0;
+            resumeMs.add(System.currentTimeMillis(), elapsed);
+            if (elapsed > RESUME_TARGET_MS) {
+                resumeMissCount++;
+                Log.w(TAG, "Возобновление приёма за " + elapsed + " мс, цель " + RESUME_TARGET_MS + " мс");
+            } else {
+                Log.d(TAG, "Возобновление приёма за " + elapsed + " мс");
+            }
+        });
+    }
+
+    // Горячий резерв включается с экрана и переживает перезапуск приложения
+    public void setFailoverEnabled(boolean enabled) {
+        failoverEnabled = enabled;
+        prefs.edit().putBoolean("failover", enabled).apply();
+        Log.d(TAG, "Резервный сервер " + (enabled ? "включён" : "выключен"));
+        executor.execute(() -> {
+            scheduleBackupSync(0);
+            armRtpWatchdog();
+        });
+    }
+
+    public boolean isFailoverEnabled() {
+        return failoverEnabled;
+    }
+
+    public void setFailoverListener(FailoverListener listener) {
+        failoverListener = listener;
+    }
+
+    // Резервный сервер (база WHEP, http://ip:8889) и его управляющий канал для паузы пересылки.
+    // null — резерва нет. Сессия к нему поднимается в фоне, не мешая основной
+    public void setBackupServer(String baseUrl, MediaPauseSignal signal) {
+        executor.execute(() -> {
+            if (baseUrl == null || !baseUrl.equals(backupBaseUrl)) {
+                closeBackup();
+            }
+            backupBaseUrl = baseUrl;
+            backupSignal = signal;
+            scheduleBackupSync(BACKUP_REARM_DELAY_MS);
+            armRtpWatchdog();
+        });
+    }
+
+    // Управляющий канал резерва открылся: можно просить сервер не пересылать поток
+    public void onBackupControlReady() {
+        executor.execute(this::pauseBackup);
+    }
+
+    // Сервер резерва подтвердил паузу (MEDIA_PAUSED); вызывается в потоке сокета
+    public void onBackupPauseAck() {
+        executor.execute(() -> {
+            if (backupSession == null || !backupPauseRequested || backupPaused) {
+                return;
+            }
+            backupPaused = true;
+            backupSession.markPaused();
+        });
+    }
+
+    // Управляющий сокет основного сервера потерян или восстановлен (поток сокета)
+    public void onPrimaryControlLost() {
+        executor.execute(() -> {
+            if (controlLost) {
+                return;
+            }
+            controlLost = true;
+            armRtpWatchdog(); // быстрый порог: сервер, скорее всего, перезапускается
+            if (interruptedAtMs != 0) {
+                failover(FAILOVER_SOCKET);
+            }
+        });
+    }
+
+    public void onPrimaryControlRestored() {
+        executor.execute(() -> {
+            // Новый сокет — сервер забыл паузы прежнего: запрашиваем их заново
+            parkPause.clear();
+            for (MediaSession session : parkedChannels.values()) {
+                if (iceConnected.contains(session)) {
+                    pauseParked(session);
+                }
+            }
+            if (reception != Reception.ACTIVE && activeSession != null) {
+                cancelPauseAckTimer();
+                reception = Reception.ACTIVE;
+                statsSampler.start(activeSession);
+                suspend();
+            }
+            if (!controlLost) {
+                return;
+            }
+            controlLost = false;
+            armRtpWatchdog();
+        });
+    }
+
+    @Override
+    public void onMediaStalled(MediaSession session) {
+        executor.execute(() -> {
+            if (session != activeSession || reception != Reception.ACTIVE) {
+                return;
+            }
+            mediaStalled = true;
+            EventJournal.get().record(EventJournal.Event.MEDIA_STALLED, session.getJournalId(), controlLost ? 1 : 0);
+            // Тишина сама по себе не отказ: источник мог замолчать на обоих серверах.
+            // Переключаемся, когда её подтверждает потеря сокета или обрыв ICE
+            if (controlLost || interruptedAtMs != 0) {
+                failover(FAILOVER_RTP);
+            }
+        });
+    }
+
+    private boolean failoverActive() {
+        return failoverEnabled && backupBaseUrl != null;
+    }
+
+    // Сторож RTP нужен активной сессии, только пока есть куда переключаться и сервер пересылает поток
+    private void armRtpWatchdog() {
+        MediaSession session = activeSession;
+        if (session == null) {
+            return;
+        }
+        mediaStalled = false;
+        boolean watch = failoverActive() && reception == Reception.ACTIVE;
+        session.setRtpWatchdog(!watch ? 0 : controlLost ? RTP_STALL_FAST_MS : RTP_STALL_MS);
+    }
+
+    private void scheduleBackupSync(long delayMs) {
+        if (backupSync != null) {
+            backupSync.cancel(false);
         }
+        backupSync = executor.schedule(this::syncBackup, delayMs, TimeUnit.MILLISECONDS);
     }
 
+    // Резерв следует за активной сессией: тот же путь потока и профиль на резервном сервере
+    private void syncBackup() {
+        backupSync = null;
+        String url = backupStreamUrl();
+        MediaSession backup = backupSession;
+        if (backup != null && (url == null || !url.equals(backup.getStreamUrl())
+                || backup.getProfile() != playoutProfile)) {
+            closeBackup();
+        }
+        if (url == null || backupSession != null) {
+            return;
+        }
+        PeerConnectionFactory factory = awaitFactory();
+        if (factory == null) {
+            return;
+        }
+        MediaSession session = new MediaSession(factory, url, playoutProfile, wantResilience(), this);
+        if (!session.prepare()) {
+            closeSession(session);
+            scheduleBackupSync(BACKUP_RETRY_MS);
+            return;
+        }
+        backupSession = session;
+        session.connect();
+        Log.d(TAG, "Подключается резервный сервер: " + url);
+    }
 
-    private static class SdpObserverImpl implements SdpObserver {
-        @Override
-        public void onCreateSuccess(SessionDescription sessionDescription) {
-            // Реализовать логику при успешном создании SDP
+    private String backupStreamUrl() {
+        if (!failoverActive() || activeSession == null) {
+            return null;
         }
+        return backupBaseUrl + HttpUrl.get(activeSession.getStreamUrl()).encodedPath();
+    }
 
-        @Override
-        public void onSetSuccess() {
-            // Реализовать логику при успешной установке SDP
+    private void closeBackup() {
+        if (backupSession != null) {
+            closeSession(backupSession);
+            backupSession = null;
         }
+        backupPauseRequested = false;
+        backupPaused = false;
+    }
 
-        @Override
-        public void onCreateFailure(String s) {
-            Log.e(TAG, "SDP Create failed: " + s);
+    private void pauseBackup() {
+        MediaSession backup = backupSession;
+        MediaPauseSignal signal = backupSignal;
+        if (backup == null || backupPauseRequested || signal == null || !iceConnected.contains(backup)) {
+            return;
         }
+        // Без поддержки паузы резерв просто принимает поток с выключенным треком
+        backupPauseRequested = signal.sendMediaPause(backup.getResourcePath(), true);
+    }
 
-        @Override
-        public void onSetFailure(String s) {
-            Log.e(TAG, "SDP Set failed: " + s);
+    private void checkFailover() {
+        failoverCheck = null;
+        if (activeSession != null && !iceConnected.contains(activeSession)) {
+            failover(FAILOVER_ICE);
+        }
+    }
+
+    private void cancelFailoverCheck() {
+        if (failoverCheck != null) {
+            failoverCheck.cancel(false);
+            failoverCheck = null;
+        }
+    }
+
+    // Резервная сессия становится активной: трек включается сразу, сервер резерва возобновляет
+    // пересылку по MEDIA_RESUME. Отказавшая сессия закрывается, новый резерв задаёт Activity
+    private void failover(int reason) {
+        MediaSession backup = backupSession;
+        MediaSession failed = activeSession;
+        if (backup == null || failed == null || reception != Reception.ACTIVE || !iceConnected.contains(backup)) {
+            return;
+        }
+        failoverStartNanos = System.nanoTime();
+        cancelFailoverCheck();
+        if (switchingSession != null) {
+            abandonSwitch(switchingSession);
+        }
+        String promotedBaseUrl = backupBaseUrl;
+        MediaPauseSignal signal = backupSignal;
+        boolean pauseRequested = backupPauseRequested;
+        backupSession = null;
+        backupBaseUrl = null;
+        backupSignal = null;
+        backupPauseRequested = false;
+        backupPaused = false;
+
+        activeSession = backup;
+        closeSession(failed);
+        closeParkedChannels(); // каналы отказавшего сервера
+        discardStandby();
+        standbyUrl = backup.getStreamUrl();
+        scheduleStandbyRefresh(STANDBY_REARM_DELAY_MS);
+        interruptedAtMs = 0;
+        controlLost = false;
+        pauseSignal = signal;
+        MediaStream stream = backup.getRemoteStream();
+        if (stream != null) {
+            setRemoteStream(stream);
+        }
+        if (pauseRequested && signal != null && signal.sendMediaPause(backup.getResourcePath(), false)) {
+            backup.awaitMediaResume(); // время переключения запишется по первым пакетам
+        } else {
+            recordFailover(System.nanoTime()); // резерв и так принимал поток
+        }
+        statsSampler.start(backup);
+        armRtpWatchdog();
+        failoverCount++;
+        reconnectCount++;
+        EventJournal.get().record(EventJournal.Event.FAILOVER, reason, backup.getJournalId());
+        Log.w(TAG, "Основной сервер недоступен, переключено на резервный: " + backup.getStreamUrl());
+        FailoverListener listener = failoverListener;
+        if (listener != null) {
+            listener.onFailover(promotedBaseUrl);
         }
+        completeConnectCallbacks();
+        publishState();
     }
 
-    public void setRemoteStream(MediaStream remoteStream) {
-        audioTrack = remoteStream.audioTracks.get(0);
-        audioTrack.setEnabled(true); // Включаем аудио
-        Log.d(TAG, "Добавлен аудиопоток: " + audioTrack.id());
+    private void recordFailover(long flowingAtNanos) {
+        long elapsed = (flowingAtNanos - failoverStartNanos) / 1_000_000;
+        failoverStartNanos = 0;
+        failoverMs.add(System.currentTimeMillis(), elapsed);
+        Log.d(TAG, "Резервный сервер звучит через " + elapsed + " мс");
     }
 
-    public void setAudioEnabled(boolean enabled) {
-        if (audioTrack != null) {
-            audioTrack.setEnabled(enabled);
-            Log.d("WebRTC_Audio", "Аудио " + (enabled ? "включено" : "выключено"));
+    // Трек закрытой сессии уже обнулён в closeSession; новый трек получит audioEnabled
+    private void applyTrackEnabled(boolean enabled) {
+        audioEnabled = enabled;
+        AudioTrack track = audioTrack;
+        if (track != null) {
+            track.setEnabled(enabled);
         }
+        EventJournal.get().record(EventJournal.Event.AUDIO_ENABLED, enabled ? 1 : 0, track != null ? 1 : 0);
     }
 
     public void closeConnection() {
-        if (peerConnection != null) {
-            peerConnection.close();
-            peerConnection = null;
+        executor.execute(this::disconnect);
+    }
+
+    private void disconnect() {
+        MediaSession session = activeSession;
+        activeSession = null;
+        if (switchingSession != null) {
+            closeSession(switchingSession);
+            switchingSession = null;
+        }
+        switchingStream = null;
+        cancelSwitchTimeout();
+        resilienceTriggered = false;
+        interruptedAtMs = 0;
+        cancelPauseAckTimer();
+        reception = Reception.ACTIVE;
+        resumeStartNanos = 0;
+        channelSwitchStartNanos = 0;
+        audioEnabled = true; // следующее подключение начинается со включённым звуком
+        audioGate.reset();
+        statsSampler.stop();
+        closeParkedChannels();
+        closeBackup();
+        cancelFailoverCheck();
+        if (backupSync != null) {
+            backupSync.cancel(false);
+            backupSync = null;
+        }
+        controlLost = false;
+        mediaStalled = false;
+        failoverStartNanos = 0;
+        failConnectCallbacks("Соединение закрыто");
+        if (session != null) {
+            closeSession(session); // DELETE ресурса на сервере и закрытие PeerConnection
+            audioTrack = null;
+            remoteStream = null;
             Log.d(TAG, "WebRTC соединение закрыто.");
         }
+        publishState();
+    }
+
+    // Есть ли сессия приёма (в том числе подключающаяся или на паузе)
+    public boolean hasActiveSession() {
+        return state != State.IDLE;
     }
 
+    // Принимаемый поток активной сессии (своего потока в режиме recvonly нет)
     public MediaStream getMediaStream() {
-        if (peerConnection == null) {
-            return null;
-        }
-        return currentMediaStream;
+        return remoteStream;
     }
 }
@@ -0,0 +1,290 @@
+package com.example.mobileapp;
+
+import android.util.Log;
+
+import org.webrtc.IceCandidate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+// Сессия WHEP на стороне HTTP: POST offer, trickle ICE через PATCH на ресурс из Location,
+// учёт ETag и DELETE при завершении
+public class WhepSession {
+    private static final String TAG = "WHEP";
+    private static final MediaType SDP = MediaType.get("application/sdp");
+    private static final MediaType SDP_FRAG = MediaType.get("application/trickle-ice-sdpfrag");
+    // Кандидаты, пришедшие в пределах этого окна, уходят одним PATCH
+    private static final long CANDIDATE_BATCH_MS = 20;
+
+    // Общий поток для отложенной отправки пачек кандидатов
+    private static final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "whep-trickle");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    public interface AnswerCallback {
+        void onAnswer(String sdpAnswer);
+
+        void onError(String message);
+    }
+
+    private final String endpointUrl;
+
+    // Состояние ресурса; доступ только под lock
+    private final Object lock = new Object();
+    private HttpUrl resourceUrl;
+    private String etag;
+    private String iceUfrag;
+    private String icePwd;
+    private final List<String> pendingMids = new ArrayList<>();
+    private final List<String> pendingCandidates = new ArrayList<>();
+    private String endOfCandidatesMid;
+    private boolean flushScheduled;
+    private boolean restartInFlight;
+    private boolean closed;
+
+    public WhepSession(String endpointUrl) {
+        this.endpointUrl = endpointUrl;
+    }
+
+    // Отправляет offer на WHEP-эндпоинт. Ответ 201 содержит answer, Location ресурса и ETag
+    public void sendOffer(String sdpOffer, AnswerCallback callback) {
+        synchronized (lock) {
+            iceUfrag = SdpUtils.attribute(sdpOffer, "ice-ufrag");
+            icePwd = SdpUtils.attribute(sdpOffer, "ice-pwd");
+        }
+
+        Request request = new Request.Builder()
+                .url(endpointUrl)
+                .post(RequestBody.create(sdpOffer, SDP))
+                .addHeader("Accept", "application/sdp")
+                .build();
+
+        HttpTransport.get().client().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                callback.onError("Ошибка при отправке SDP offer: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try (Response r = response) {
+                    if (!r.isSuccessful()) {
+                        callback.onError("Сервер вернул ошибку: " + r.code());
+                        return;
+                    }
+                    String location = r.header("Location");
+                    synchronized (lock) {
+                        etag = r.header("ETag");
+                        if (location != null) {
+                            resourceUrl = r.request().url().resolve(location);
+                        } else {
+                            Log.w(TAG, "Сервер не вернул Location: trickle ICE и DELETE недоступны");
+                        }
+                        if (closed) {
+                            // Сессию закрыли, пока шёл POST: сразу освобождаем ресурс на сервере
+                            deleteResourceLocked();
+                            return;
+                        }
+                        scheduleFlushLocked();
+                    }
+                    callback.onAnswer(SdpUtils.normalizeAnswer(r.body().string()));
+                }
+            }
+        });
+    }
+
+    public void addLocalCandidate(IceCandidate candidate) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            pendingMids.add(candidate.sdpMid);
+            pendingCandidates.add(candidate.sdp);
+            scheduleFlushLocked();
+        }
+    }
+
+    // Сбор кандидатов завершён: сервер получит a=end-of-candidates
+    public void endOfCandidates(String mid) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            endOfCandidatesMid = mid != null ? mid : "0";
+            scheduleFlushLocked();
+        }
+    }
+
+    private void scheduleFlushLocked() {
+        if (flushScheduled || resourceUrl == null || restartInFlight) {
+            return; // до получения Location (или ответа на ICE restart) кандидаты копятся
+        }
+        if (pendingCandidates.isEmpty() && endOfCandidatesMid == null) {
+            return;
+        }
+        flushScheduled = true;
+        scheduler.schedule(this::flush, CANDIDATE_BATCH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        Request request;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (closed || resourceUrl == null || iceUfrag == null || icePwd == null) {
+                return;
+            }
+            String fragment = SdpUtils.trickleFragment(iceUfrag, icePwd,
+                    pendingMids, pendingCandidates, endOfCandidatesMid);
+            pendingMids.clear();
+            pendingCandidates.clear();
+            endOfCandidatesMid = null;
+
+            Request.Builder builder = new Request.Builder()
+                    .url(resourceUrl)
+                    .patch(RequestBody.create(fragment, SDP_FRAG));
+            if (etag != null) {
+                builder.addHeader("If-Match", etag);
+            }
+            request = builder.build();
+        }
+
+        HttpTransport.get().client().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.e(TAG, "Ошибка PATCH trickle ICE: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (Response r = response) {
+                    if (r.code() == 412) {
+                        Log.e(TAG, "ETag устарел, сервер отклонил кандидаты (412)");
+                    } else if (!r.isSuccessful() && r.code() != 405 && r.code() != 501) {
+                        Log.e(TAG, "Сервер отклонил PATCH: " + r.code());
+                    }
+                    String newEtag = r.header("ETag");
+                    if (newEtag != null) {
+                        synchronized (lock) {
+                            etag = newEtag;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    // ICE restart по WHEP: PATCH с новыми ice-ufrag/ice-pwd и If-Match: "*".
+    // Сервер отвечает 200 и sdpfrag со своими новыми учётными данными и кандидатами
+    public void restartIce(String sdpOffer, AnswerCallback callback) {
+        Request request;
+        synchronized (lock) {
+            if (closed || resourceUrl == null) {
+                callback.onError("Нет ресурса WHEP для ICE restart");
+                return;
+            }
+            iceUfrag = SdpUtils.attribute(sdpOffer, "ice-ufrag");
+            icePwd = SdpUtils.attribute(sdpOffer, "ice-pwd");
+            // Кандидаты со старыми учётными данными больше не нужны
+            pendingMids.clear();
+            pendingCandidates.clear();
+            endOfCandidatesMid = null;
+            restartInFlight = true;
+
+            String mid = SdpUtils.attribute(sdpOffer, "mid");
+            String fragment = SdpUtils.trickleFragment(iceUfrag, icePwd,
+                    Collections.singletonList(mid != null ? mid : "0"),
+                    Collections.<String>emptyList(), null);
+            request = new Request.Builder()
+                    .url(resourceUrl)
+                    .patch(RequestBody.create(fragment, SDP_FRAG))
+                    .addHeader("If-Match", "*")
+                    .build();
+        }
+
+        HttpTransport.get().client().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                synchronized (lock) {
+                    restartInFlight = false;
+                }
+                callback.onError("Ошибка ICE restart: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try (Response r = response) {
+                    String body = r.body() != null ? r.body().string() : "";
+                    synchronized (lock) {
+                        restartInFlight = false;
+                        String newEtag = r.header("ETag");
+                        if (newEtag != null) {
+                            etag = newEtag;
+                        }
+                        scheduleFlushLocked();
+                    }
+                    if (r.code() != 200 || body.isEmpty()) {
+                        callback.onError("Сервер не поддерживает ICE restart: " + r.code());
+                        return;
+                    }
+                    callback.onAnswer(body);
+                }
+            }
+        });
+    }
+
+    // Путь ресурса на сервере (из Location); по нему сервер ставит подписку на паузу. null до ответа на offer
+    public String getResourcePath() {
+        synchronized (lock) {
+            return resourceUrl != null ? resourceUrl.encodedPath() : null;
+        }
+    }
+
+    // Завершает сессию: сервер сразу освобождает ресурс, не дожидаясь таймаута
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pendingMids.clear();
+            pendingCandidates.clear();
+            deleteResourceLocked();
+        }
+    }
+
+    private void deleteResourceLocked() {
+        if (resourceUrl == null) {
+            return;
+        }
+        Request request = new Request.Builder().url(resourceUrl).delete().build();
+        resourceUrl = null;
+        HttpTransport.get().client().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.w(TAG, "Не удалось удалить ресурс WHEP: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                Log.d(TAG, "Ресурс WHEP удалён: " + response.code());
+            }
+        });
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.mobileapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.Assert.*;
+
+public class IdentityCacheTest {
+    private static final long TTL = 1000;
+    private static final byte[] UID_A = {0x04, 0x11, 0x22, 0x33};
+    private static final byte[] UID_B = {0x04, 0x44, 0x55, 0x66, 0x77, 0x08, 0x09};
+    private static final byte[] UID_C = {0x01, 0x02, 0x03, 0x04};
+
+    @Test
+    public void lookup_evictsLeastRecentlyUsed() {
+        IdentityCache cache = new IdentityCache(null, 2, TTL);
+        cache.store(UID_A, UidCodec.toHex(UID_A), "Иванов Иван", 0);
+        cache.store(UID_B, UidCodec.toHex(UID_B), "Петров Пётр", 0);
+        assertEquals("Иванов Иван", cache.lookup(UidCodec.toHex(UID_A), 10));
+        cache.store(UID_C, UidCodec.toHex(UID_C), "Сидоров Сидор", 10);
+        assertNull(cache.lookup(UidCodec.toHex(UID_B), 10));
+        assertEquals("Иванов Иван", cache.lookup(UidCodec.toHex(UID_A), 10));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void lookup_dropsExpiredEntries() {
+        IdentityCache cache = new IdentityCache(null, 8, TTL);
+        cache.store(UID_A, UidCodec.toHex(UID_A), "Иванов Иван", 0);
+        assertEquals("Иванов Иван", cache.lookup(UidCodec.toHex(UID_A), TTL));
+        assertNull(cache.lookup(UidCodec.toHex(UID_A), TTL + 1));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void writeRead_roundTripSkipsExpired() throws Exception {
+        IdentityCache cache = new IdentityCache(null, 8, TTL);
+        cache.store(UID_A, UidCodec.toHex(UID_A), "Иванов Иван", 0);
+        cache.store(UID_B, UidCodec.toHex(UID_B), "Петров Пётр", 800);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.write(out, 900);
+
+        IdentityCache restored = new IdentityCache(null, 8, TTL);
+        restored.read(new ByteArrayInputStream(out.toByteArray()), 1500);
+        assertNull(restored.lookup(UidCodec.toHex(UID_A), 1500));
+        assertEquals("Петров Пётр", restored.lookup(UidCodec.toHex(UID_B), 1500));
+    }
+}
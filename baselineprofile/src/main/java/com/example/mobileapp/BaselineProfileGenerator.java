@@ -0,0 +1,60 @@
+package com.example.mobileapp;
+
+import android.os.SystemClock;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Until;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+import kotlin.Unit;
+
+// Профиль покрывает запуск и путь касания: разбор кадров управления, ФИО, создание
+// PeerConnection и offer/answer WHEP. Касание и сервер — как в JoinBenchmark модуля :benchmark
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+    private static final String PACKAGE = "com.example.mobileapp";
+    private static final String EXTRA_SCRIPTED_SERVER = "com.example.mobileapp.SCRIPTED_SERVER";
+    private static final String EXTRA_SCRIPTED_BADGE = "com.example.mobileapp.SCRIPTED_BADGE";
+    private static final String SERVER = "127.0.0.1";
+    private static final String BADGE = "04A1B2C3D4E5F6";
+    private static final int CONTROL_PORT = 8080;
+    private static final int WHEP_PORT = 8889;
+    private static final long TIMEOUT_MS = 10_000;
+
+    @Rule
+    public BaselineProfileRule rule = new BaselineProfileRule();
+
+    @Test
+    public void startupAndJoin() throws IOException {
+        try (StandInServer standIn = new StandInServer(true)) {
+            standIn.start(InetAddress.getByName(SERVER), CONTROL_PORT, WHEP_PORT);
+            rule.collect(PACKAGE, 15, 3, null, false, false, line -> true, scope -> {
+                scope.pressHome();
+                int offersBefore = standIn.offerCount();
+                scope.startActivityAndWait(intent -> {
+                    intent.putExtra(EXTRA_SCRIPTED_SERVER, SERVER);
+                    intent.putExtra(EXTRA_SCRIPTED_BADGE, BADGE);
+                    return Unit.INSTANCE;
+                });
+                scope.getDevice().wait(Until.hasObject(By.textContains("Участник")), TIMEOUT_MS);
+                long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+                while (standIn.offerCount() == offersBefore && SystemClock.uptimeMillis() < deadline) {
+                    SystemClock.sleep(10);
+                }
+                // Разбор answer и setRemoteDescription тоже должны попасть в профиль
+                SystemClock.sleep(500);
+                return Unit.INSTANCE;
+            });
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.mobileapp;
+
+import android.os.SystemClock;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Until;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.List;
+
+import kotlin.Unit;
+
+// Касание пропуска до аудио: приложение запускается холодным с интентом сценария
+// (адрес заглушки и UID вместо метки), заглушка в процессе теста отвечает номером устройства,
+// ФИО и заготовленным answer. Времена фаз — асинхронные секции "Join:<фаза>" из JoinTracer.
+// ICE с заглушкой не устанавливается: FIRST_RTP здесь не меряется, только сигнализация
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class JoinBenchmark {
+    static final String EXTRA_SCRIPTED_SERVER = "com.example.mobileapp.SCRIPTED_SERVER";
+    static final String EXTRA_SCRIPTED_BADGE = "com.example.mobileapp.SCRIPTED_BADGE";
+    static final String SERVER = "127.0.0.1";
+    static final String BADGE = "04A1B2C3D4E5F6";
+    // Порты, на которые ходит приложение (HttpTransport.CONTROL_PORT и WHEP_PORT)
+    private static final int CONTROL_PORT = 8080;
+    private static final int WHEP_PORT = 8889;
+    private static final int ITERATIONS = 10;
+    private static final long TIMEOUT_MS = 10_000;
+
+    private static StandInServer standIn;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    private int offersBefore;
+
+    @BeforeClass
+    public static void startStandIn() throws IOException {
+        standIn = new StandInServer(true);
+        standIn.start(InetAddress.getByName(SERVER), CONTROL_PORT, WHEP_PORT);
+    }
+
+    @AfterClass
+    public static void stopStandIn() throws IOException {
+        if (standIn != null) {
+            standIn.close();
+        }
+    }
+
+    @Test
+    public void tapToIdentityAndOffer() {
+        List<Metric> metrics = Arrays.asList(
+                new TraceSectionMetric("Join:UID_SENT"),
+                new TraceSectionMetric("Join:DEVICE_NUMBER_RECEIVED"),
+                new TraceSectionMetric("Join:OFFER_CREATED"),
+                new TraceSectionMetric("Join:WHEP_RESPONSE"));
+        rule.measureRepeated(StartupBenchmark.PACKAGE, metrics, new CompilationMode.Partial(),
+                StartupMode.COLD, ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    offersBefore = standIn.offerCount();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait(intent -> {
+                        intent.putExtra(EXTRA_SCRIPTED_SERVER, SERVER);
+                        intent.putExtra(EXTRA_SCRIPTED_BADGE, BADGE);
+                        return Unit.INSTANCE;
+                    });
+                    // ФИО на экране — ответ управления дошёл; offer на заглушке — WHEP отвечен
+                    scope.getDevice().wait(Until.hasObject(By.textContains("Участник")), TIMEOUT_MS);
+                    long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+                    while (standIn.offerCount() == offersBefore && SystemClock.uptimeMillis() < deadline) {
+                        SystemClock.sleep(10);
+                    }
+                    // Заглушка считает offer до отправки ответа: даём ответу дойти до приложения
+                    SystemClock.sleep(200);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.mobileapp;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+// Время до первого кадра (timeToInitialDisplayMs) при холодном и тёплом запуске.
+// Холодный запуск меряется и без профиля: разница показывает вклад Baseline Profile
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    static final String PACKAGE = "com.example.mobileapp";
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Test
+    public void coldStartup() {
+        startup(StartupMode.COLD, new CompilationMode.Partial());
+    }
+
+    @Test
+    public void coldStartupWithoutProfile() {
+        startup(StartupMode.COLD, new CompilationMode.None());
+    }
+
+    @Test
+    public void warmStartup() {
+        startup(StartupMode.WARM, new CompilationMode.Partial());
+    }
+
+    private void startup(StartupMode mode, CompilationMode compilation) {
+        rule.measureRepeated(PACKAGE, Collections.singletonList(new StartupTimingMetric()),
+                compilation, mode, ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+}
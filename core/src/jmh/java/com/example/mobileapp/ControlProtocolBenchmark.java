@@ -0,0 +1,50 @@
+package com.example.mobileapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import okio.ByteString;
+
+// Разбор и диспетчеризация управляющих сообщений: то, что происходит в потоке сокета
+// на каждую команду адресации. decode и audioState не должны выделять память
+@State(Scope.Thread)
+public class ControlProtocolBenchmark {
+    private static final int OWN_DEVICE = 7;
+
+    private final ControlMessage message = new ControlMessage();
+    private ByteString addressFrame;
+    private ByteString identityFrame;
+    private byte[] uid;
+
+    @Setup
+    public void setUp() {
+        addressFrame = ControlProtocol.encodeDevice(ControlProtocol.OP_ADDRESS_DEVICE, 42, OWN_DEVICE);
+        identityFrame = ControlProtocol.encodeIdentity(43, OWN_DEVICE, "Иванов Иван Иванович");
+        uid = new byte[]{0x04, (byte) 0xA1, 0x7F, 0x22, 0x33, 0x44, 0x55};
+    }
+
+    @Benchmark
+    public int decodeAddressAndDispatch() {
+        ControlProtocol.decode(addressFrame, message);
+        return ControlProtocol.audioState(message, OWN_DEVICE);
+    }
+
+    @Benchmark
+    public int decodeTextAndDispatch() {
+        ControlProtocol.decodeText("7", false, message);
+        return ControlProtocol.audioState(message, OWN_DEVICE);
+    }
+
+    @Benchmark
+    public String decodeIdentity() {
+        ControlProtocol.decode(identityFrame, message);
+        return message.text();
+    }
+
+    @Benchmark
+    public ByteString encodeUid() {
+        return ControlProtocol.encodeUid(uid, 44);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.mobileapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+// Запись события на приёме управляющего кадра: журнал против прежней склейки строки для Log.d
+@State(Scope.Thread)
+public class EventJournalBenchmark {
+    private final EventJournal journal = new EventJournal(EventJournal.DEFAULT_CAPACITY);
+    private final EventJournal gated = new EventJournal(EventJournal.DEFAULT_CAPACITY);
+    private final String text = "AUDIO:42:1";
+    private int seq;
+
+    public EventJournalBenchmark() {
+        gated.setMinLevel(EventJournal.INFO);
+    }
+
+    @Benchmark
+    public void journalRecord() {
+        journal.record(EventJournal.Event.CONTROL_FRAME, 0x02, seq++);
+    }
+
+    @Benchmark
+    public void journalBelowLevel() {
+        gated.record(EventJournal.Event.CONTROL_FRAME, 0x02, seq++);
+    }
+
+    @Benchmark
+    public String concatenatedMessage() {
+        return "Получено: " + text;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.mobileapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Обработка SDP на пути подключения: правка offer перед отправкой и разбор answer сервера
+@State(Scope.Thread)
+public class SdpUtilsBenchmark {
+    private String offer;
+    private String answer;
+
+    @Setup
+    public void setUp() {
+        StringBuilder sb = new StringBuilder()
+                .append("v=0\r\n")
+                .append("o=- 4611731400430051336 2 IN IP4 127.0.0.1\r\n")
+                .append("s=-\r\n")
+                .append("t=0 0\r\n")
+                .append("a=group:BUNDLE 0\r\n")
+                .append("m=audio 9 UDP/TLS/RTP/SAVPF 111 63 9 0 8 13 110 126\r\n")
+                .append("c=IN IP4 0.0.0.0\r\n")
+                .append("a=ice-ufrag:8hhY\r\n")
+                .append("a=ice-pwd:asd88fgpdd777uzjYhagZg\r\n")
+                .append("a=mid:0\r\n")
+                .append("a=recvonly\r\n")
+                .append("a=rtpmap:111 opus/48000/2\r\n")
+                .append("a=rtcp-fb:111 transport-cc\r\n")
+                .append("a=fmtp:111 minptime=10;useinbandfec=1\r\n")
+                .append("a=rtpmap:63 red/48000/2\r\n")
+                .append("a=fmtp:63 111/111\r\n")
+                .append("a=rtpmap:9 G722/8000\r\n")
+                .append("a=rtpmap:0 PCMU/8000\r\n")
+                .append("a=rtpmap:8 PCMA/8000\r\n");
+        for (int i = 0; i < 8; i++) {
+            sb.append("a=candidate:").append(i).append(" 1 udp 2122260223 192.168.0.")
+                    .append(100 + i).append(" 5").append(1000 + i).append(" typ host generation 0\r\n");
+        }
+        offer = sb.toString();
+        // Сервер присылает answer с экранированными переводами строк
+        answer = offer.replace("a=recvonly", "a=sendonly").replace("\r\n", "\\n");
+    }
+
+    @Benchmark
+    public String normalizeAnswer() {
+        return SdpUtils.normalizeAnswer(answer);
+    }
+
+    @Benchmark
+    public String mungeOffer() {
+        return SdpUtils.setResilience(SdpUtils.setOpusParameters(offer, 20, 40, false, 40000), true);
+    }
+
+    @Benchmark
+    public int negotiatedResilience() {
+        return SdpUtils.negotiatedResilience(offer);
+    }
+}
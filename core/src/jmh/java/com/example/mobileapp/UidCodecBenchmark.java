@@ -0,0 +1,25 @@
+package com.example.mobileapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+// Кодирование UID пропуска: таблица против прежнего String.format на каждый байт
+@State(Scope.Thread)
+public class UidCodecBenchmark {
+    private final byte[] uid = {0x04, (byte) 0xA1, 0x7F, 0x22, 0x33, (byte) 0xC4, 0x55};
+
+    @Benchmark
+    public String tableHex() {
+        return UidCodec.toHex(uid);
+    }
+
+    @Benchmark
+    public String formatHex() {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (byte b : uid) {
+            stringBuilder.append(String.format("%02X", b));
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.mobileapp;
+
+import java.util.concurrent.Future;
+
+// Включение звука и приостановка приёма без звука. Ручное переключение и команды сервера
+// идут одним путём: выключение через holdOffMs приостанавливает приём, включение отменяет
+// ожидание или возобновляет уже приостановленный приём. Только поток владельца (клиент WebRTC)
+public final class AudioGate {
+    public interface Host {
+        // Приём идёт и его есть что приостанавливать
+        boolean isReceiving();
+
+        // Приём приостановлен или приостанавливается
+        boolean isSuspended();
+
+        void suspend();
+
+        // arrivalNanos — System.nanoTime() команды включения
+        void resume(long arrivalNanos);
+
+        // Таймер в потоке владельца
+        Future<?> schedule(Runnable task, long delayMs);
+    }
+
+    private final Host host;
+    private final long holdOffMs;
+    private boolean enabled = true;
+    private Future<?> pending;
+
+    public AudioGate(Host host, long holdOffMs) {
+        this.host = host;
+        this.holdOffMs = holdOffMs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled, long arrivalNanos) {
+        this.enabled = enabled;
+        if (!enabled) {
+            arm();
+            return;
+        }
+        cancel();
+        if (host.isSuspended()) {
+            host.resume(arrivalNanos);
+        }
+    }
+
+    // Новая сессия при выключенном звуке тоже приостанавливается после ожидания
+    public void arm() {
+        if (enabled || pending != null || !host.isReceiving()) {
+            return;
+        }
+        pending = host.schedule(this::fire, holdOffMs);
+    }
+
+    public boolean isArmed() {
+        return pending != null;
+    }
+
+    // Следующее подключение начинается со включённым звуком
+    public void reset() {
+        enabled = true;
+        cancel();
+    }
+
+    private void cancel() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private void fire() {
+        pending = null;
+        if (!enabled && host.isReceiving()) {
+            host.suspend();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.mobileapp;
+
+import java.nio.charset.StandardCharsets;
+
+import okio.ByteString;
+
+// Разобранное управляющее сообщение. Один экземпляр переиспользуется для всех входящих
+// сообщений, поэтому после обработки ссылки на него хранить нельзя
+public final class ControlMessage {
+    public int opcode;
+    public int seq;
+    public int deviceId = ControlProtocol.NO_DEVICE;
+    // System.nanoTime() прихода сообщения из сокета
+    public long receivedAtNanos;
+
+    // ФИО (IDENTITY), путь потока (SELECT_CHANNEL) или ресурса WHEP (MEDIA_*): либо байты UTF-8
+    // в исходном кадре, либо готовая строка текстового протокола
+    private ByteString source;
+    private int textOffset;
+    private int textLength;
+    private String text;
+
+    void reset(int opcode, int seq) {
+        this.opcode = opcode;
+        this.seq = seq;
+        this.deviceId = ControlProtocol.NO_DEVICE;
+        this.source = null;
+        this.textOffset = 0;
+        this.textLength = 0;
+        this.text = null;
+    }
+
+    void setText(ByteString source, int offset, int length) {
+        this.source = source;
+        this.textOffset = offset;
+        this.textLength = length;
+        this.text = null;
+    }
+
+    void setText(String text) {
+        this.source = null;
+        this.text = text;
+    }
+
+    // Строка создаётся только по запросу
+    public String text() {
+        if (text == null && source != null) {
+            byte[] utf8 = new byte[textLength];
+            for (int i = 0; i < textLength; i++) {
+                utf8[i] = source.getByte(textOffset + i);
+            }
+            text = new String(utf8, StandardCharsets.UTF_8);
+        }
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return ControlProtocol.opcodeName(opcode) + " seq=" + seq + " device=" + deviceId;
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.mobileapp;
+
+import java.nio.charset.StandardCharsets;
+
+import okio.ByteString;
+
+// Управляющий протокол WebSocket-канала.
+//
+// Бинарный кадр (big-endian):
+//   [0]    версия протокола (VERSION)
+//   [1]    код операции (OP_*)
+//   [2..3] порядковый номер сообщения (uint16)
+//   далее  поля операции:
+//          ASSIGN_DEVICE, ADDRESS_DEVICE: int32 номер устройства
+//          IDENTITY: int32 номер устройства, uint16 длина, ФИО в UTF-8
+//          UID (клиент -> сервер): uint8 длина, байты UID пропуска
+//          MEDIA_PAUSE, MEDIA_RESUME (клиент -> сервер), MEDIA_PAUSED: необязательно uint8 длина
+//            и путь ресурса WHEP (Location, например "/stream/whep/1") в UTF-8 — пауза одной
+//            подписки; без поля — всех подписок устройства. MEDIA_PAUSED повторяет путь из запроса
+//          SELECT_CHANNEL: uint8 длина, путь потока в UTF-8 (например, "stream")
+//          TELEMETRY (клиент -> сервер): uint8 число сводок, затем по TELEMETRY_RECORD_SIZE байт на сводку:
+//            uint16 возраст сводки в секундах, uint16 потери (‰), uint16 джиттер (мс),
+//            uint16 сокрытие (‰), uint8 переподключений, uint8 заряд (%), int8 RSSI Wi-Fi (дБм),
+//            uint8 состояние клиента; 0xFFFF/0xFF/-128 — значение неизвестно
+//
+// Текстовый протокол (номер устройства, "0", "-1", "FIO:...", "CH:...") остаётся запасным вариантом,
+// если сервер не выбрал бинарный подпротокол при установке соединения
+public final class ControlProtocol {
+    public static final int VERSION = 1;
+
+    // Подпротоколы WebSocket (Sec-WebSocket-Protocol)
+    public static final String SUBPROTOCOL_BINARY = "claudio.bin.v1";
+    public static final String SUBPROTOCOL_TEXT = "claudio.text";
+    // Текстовый предлагается первым: некоторые стеки (например, Node ws без handleProtocols)
+    // по умолчанию возвращают первый предложенный, и старый текстовый сервер получил бы
+    // бинарные кадры. Сервер с бинарным протоколом выбирает его явно
+    public static final String SUBPROTOCOL_OFFER = SUBPROTOCOL_TEXT + ", " + SUBPROTOCOL_BINARY;
+
+    public static final int OP_ASSIGN_DEVICE = 0x01;  // сервер присвоил устройству номер
+    public static final int OP_ADDRESS_DEVICE = 0x02; // обращение к одному устройству
+    public static final int OP_ADDRESS_ALL = 0x03;    // обращение ко всем
+    public static final int OP_MUTE_ALL = 0x04;       // заглушить всех
+    public static final int OP_IDENTITY = 0x05;       // ФИО владельца пропуска
+    public static final int OP_MEDIA_PAUSED = 0x06;   // сервер остановил пересылку медиа этому устройству
+    public static final int OP_SELECT_CHANNEL = 0x07; // переключить слышимый канал (путь потока)
+    public static final int OP_UID = 0x10;            // UID пропуска (от клиента)
+    public static final int OP_MEDIA_PAUSE = 0x11;    // остановить пересылку медиа (от клиента)
+    public static final int OP_MEDIA_RESUME = 0x12;   // возобновить пересылку медиа (от клиента)
+    public static final int OP_TELEMETRY = 0x13;      // пакет сводок качества приёма (от клиента)
+
+    public static final int NO_DEVICE = Integer.MIN_VALUE;
+
+    // Результат audioState: биты состояния звука или AUDIO_UNCHANGED
+    public static final int AUDIO_ON = 1;
+    public static final int AUDIO_BUTTON_ENABLED = 2;
+    public static final int AUDIO_UNCHANGED = -1;
+
+    public static final int TELEMETRY_RECORD_SIZE = 12;
+
+    private static final int HEADER_SIZE = 4;
+    private static final String TEXT_UID_PREFIX = "UID:";
+    private static final String TEXT_FIO_PREFIX = "FIO:";
+    private static final String TEXT_CHANNEL_PREFIX = "CH:";
+
+    private ControlProtocol() {
+    }
+
+    // Разбирает бинарный кадр в out без промежуточных строк. false — кадр некорректен
+    public static boolean decode(ByteString frame, ControlMessage out) {
+        int size = frame.size();
+        if (size < HEADER_SIZE || (frame.getByte(0) & 0xFF) != VERSION) {
+            return false;
+        }
+        int opcode = frame.getByte(1) & 0xFF;
+        int seq = readUint16(frame, 2);
+        out.reset(opcode, seq);
+        switch (opcode) {
+            case OP_ASSIGN_DEVICE:
+            case OP_ADDRESS_DEVICE:
+                if (size < HEADER_SIZE + 4) {
+                    return false;
+                }
+                out.deviceId = readInt32(frame, HEADER_SIZE);
+                return true;
+            case OP_ADDRESS_ALL:
+            case OP_MUTE_ALL:
+                return true;
+            case OP_MEDIA_PAUSED:
+            case OP_MEDIA_PAUSE:
+            case OP_MEDIA_RESUME: {
+                if (size == HEADER_SIZE) {
+                    return true; // все подписки устройства
+                }
+                int length = frame.getByte(HEADER_SIZE) & 0xFF;
+                if (size < HEADER_SIZE + 1 + length) {
+                    return false;
+                }
+                out.setText(frame, HEADER_SIZE + 1, length);
+                return true;
+            }
+            case OP_IDENTITY: {
+                if (size < HEADER_SIZE + 6) {
+                    return false;
+                }
+                out.deviceId = readInt32(frame, HEADER_SIZE);
+                int length = readUint16(frame, HEADER_SIZE + 4);
+                if (size < HEADER_SIZE + 6 + length) {
+                    return false;
+                }
+                out.setText(frame, HEADER_SIZE + 6, length);
+                return true;
+            }
+            case OP_SELECT_CHANNEL: {
+                if (size < HEADER_SIZE + 1) {
+                    return false;
+                }
+                int length = frame.getByte(HEADER_SIZE) & 0xFF;
+                if (size < HEADER_SIZE + 1 + length) {
+                    return false;
+                }
+                out.setText(frame, HEADER_SIZE + 1, length);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    // Разбирает сообщение текстового протокола. Смысл числа зависит от того,
+    // ждёт ли клиент номер устройства после отправки UID
+    public static boolean decodeText(String text, boolean awaitingDeviceNumber, ControlMessage out) {
+        if (text.startsWith(TEXT_FIO_PREFIX)) {
+            out.reset(OP_IDENTITY, 0);
+            out.setText(text.substring(TEXT_FIO_PREFIX.length()));
+            return true;
+        }
+        if (text.startsWith(TEXT_CHANNEL_PREFIX)) {
+            out.reset(OP_SELECT_CHANNEL, 0);
+            out.setText(text.substring(TEXT_CHANNEL_PREFIX.length()));
+            return true;
+        }
+        int number = parseInt(text);
+        if (number == NO_DEVICE) {
+            return false;
+        }
+        if (awaitingDeviceNumber) {
+            out.reset(OP_ASSIGN_DEVICE, 0);
+            out.deviceId = number;
+        } else if (number == 0) {
+            out.reset(OP_ADDRESS_ALL, 0);
+        } else if (number == -1) {
+            out.reset(OP_MUTE_ALL, 0);
+        } else {
+            out.reset(OP_ADDRESS_DEVICE, 0);
+            out.deviceId = number;
+        }
+        return true;
+    }
+
+    public static ByteString encodeUid(byte[] uid, int seq) {
+        byte[] frame = new byte[HEADER_SIZE + 1 + uid.length];
+        writeHeader(frame, OP_UID, seq);
+        frame[HEADER_SIZE] = (byte) uid.length;
+        System.arraycopy(uid, 0, frame, HEADER_SIZE + 1, uid.length);
+        return ByteString.of(frame);
+    }
+
+    public static String encodeUidText(String uidHex) {
+        return TEXT_UID_PREFIX + uidHex;
+    }
+
+    // Кадры сервера (используются в тестах и симуляции)
+    public static ByteString encodeDevice(int opcode, int seq, int deviceId) {
+        byte[] frame = new byte[HEADER_SIZE + 4];
+        writeHeader(frame, opcode, seq);
+        writeInt32(frame, HEADER_SIZE, deviceId);
+        return ByteString.of(frame);
+    }
+
+    public static ByteString encodeSimple(int opcode, int seq) {
+        byte[] frame = new byte[HEADER_SIZE];
+        writeHeader(frame, opcode, seq);
+        return ByteString.of(frame);
+    }
+
+    public static ByteString encodeIdentity(int seq, int deviceId, String fio) {
+        byte[] utf8 = fio.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[HEADER_SIZE + 6 + utf8.length];
+        writeHeader(frame, OP_IDENTITY, seq);
+        writeInt32(frame, HEADER_SIZE, deviceId);
+        frame[HEADER_SIZE + 4] = (byte) (utf8.length >>> 8);
+        frame[HEADER_SIZE + 5] = (byte) utf8.length;
+        System.arraycopy(utf8, 0, frame, HEADER_SIZE + 6, utf8.length);
+        return ByteString.of(frame);
+    }
+
+    public static ByteString encodeChannel(int seq, String path) {
+        byte[] utf8 = path.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[HEADER_SIZE + 1 + utf8.length];
+        writeHeader(frame, OP_SELECT_CHANNEL, seq);
+        frame[HEADER_SIZE] = (byte) utf8.length;
+        System.arraycopy(utf8, 0, frame, HEADER_SIZE + 1, utf8.length);
+        return ByteString.of(frame);
+    }
+
+    // MEDIA_PAUSE, MEDIA_RESUME или MEDIA_PAUSED; resource — путь ресурса WHEP, null — все подписки
+    public static ByteString encodeMediaPause(int opcode, int seq, String resource) {
+        if (resource == null) {
+            return encodeSimple(opcode, seq);
+        }
+        byte[] utf8 = resource.getBytes(StandardCharsets.UTF_8);
+        byte[] frame = new byte[HEADER_SIZE + 1 + utf8.length];
+        writeHeader(frame, opcode, seq);
+        frame[HEADER_SIZE] = (byte) utf8.length;
+        System.arraycopy(utf8, 0, frame, HEADER_SIZE + 1, utf8.length);
+        return ByteString.of(frame);
+    }
+
+    // Возраст сводок считается от nowMs — момента отправки, поэтому часы клиента и сервера
+    // сверять не нужно
+    public static ByteString encodeTelemetry(int seq, TelemetryBatch batch, long nowMs) {
+        int count = batch.size();
+        byte[] frame = new byte[HEADER_SIZE + 1 + count * TELEMETRY_RECORD_SIZE];
+        writeHeader(frame, OP_TELEMETRY, seq);
+        frame[HEADER_SIZE] = (byte) count;
+        int offset = HEADER_SIZE + 1;
+        for (int i = 0; i < count; i++) {
+            long ageSeconds = Math.max(0, (nowMs - batch.sampledAtMs[i]) / 1000);
+            writeUint16(frame, offset, (int) Math.min(0xFFFF, ageSeconds));
+            writeUint16(frame, offset + 2, batch.lossPermille[i]);
+            writeUint16(frame, offset + 4, batch.jitterMs[i]);
+            writeUint16(frame, offset + 6, batch.concealmentPermille[i]);
+            frame[offset + 8] = (byte) batch.reconnects[i];
+            frame[offset + 9] = (byte) batch.batteryPercent[i];
+            frame[offset + 10] = (byte) batch.rssiDbm[i];
+            frame[offset + 11] = (byte) batch.state[i];
+            offset += TELEMETRY_RECORD_SIZE;
+        }
+        return ByteString.of(frame);
+    }
+
+    // Разбор на стороне сервера (тесты, симуляция). Время сводок восстанавливается от nowMs
+    public static boolean decodeTelemetry(ByteString frame, TelemetryBatch out, long nowMs) {
+        int size = frame.size();
+        if (size < HEADER_SIZE + 1 || (frame.getByte(0) & 0xFF) != VERSION
+                || (frame.getByte(1) & 0xFF) != OP_TELEMETRY) {
+            return false;
+        }
+        int count = frame.getByte(HEADER_SIZE) & 0xFF;
+        if (size < HEADER_SIZE + 1 + count * TELEMETRY_RECORD_SIZE || count > out.capacity()) {
+            return false;
+        }
+        out.clear();
+        int offset = HEADER_SIZE + 1;
+        for (int i = 0; i < count; i++) {
+            out.sampledAtMs[i] = nowMs - readUint16(frame, offset) * 1000L;
+            out.lossPermille[i] = readUint16(frame, offset + 2);
+            out.jitterMs[i] = readUint16(frame, offset + 4);
+            out.concealmentPermille[i] = readUint16(frame, offset + 6);
+            out.reconnects[i] = frame.getByte(offset + 8) & 0xFF;
+            out.batteryPercent[i] = frame.getByte(offset + 9) & 0xFF;
+            out.rssiDbm[i] = frame.getByte(offset + 10);
+            out.state[i] = frame.getByte(offset + 11) & 0xFF;
+            offset += TELEMETRY_RECORD_SIZE;
+        }
+        out.size = count;
+        return true;
+    }
+
+    // Бинарный протокол — только если сервер выбрал ровно его (заголовок ответа или
+    // подпротокол сокета); отсутствие выбора и любое другое значение — текстовый
+    public static boolean isBinarySelected(String selected) {
+        return selected != null && SUBPROTOCOL_BINARY.equals(selected.trim());
+    }
+
+    // true, если seq новее last с учётом переполнения uint16
+    public static boolean isNewer(int seq, int last) {
+        int diff = (seq - last) & 0xFFFF;
+        return diff != 0 && diff < 0x8000;
+    }
+
+    public static String opcodeName(int opcode) {
+        switch (opcode) {
+            case OP_ASSIGN_DEVICE:
+                return "ASSIGN_DEVICE";
+            case OP_ADDRESS_DEVICE:
+                return "ADDRESS_DEVICE";
+            case OP_ADDRESS_ALL:
+                return "ADDRESS_ALL";
+            case OP_MUTE_ALL:
+                return "MUTE_ALL";
+            case OP_IDENTITY:
+                return "IDENTITY";
+            case OP_MEDIA_PAUSED:
+                return "MEDIA_PAUSED";
+            case OP_SELECT_CHANNEL:
+                return "SELECT_CHANNEL";
+            case OP_UID:
+                return "UID";
+            case OP_MEDIA_PAUSE:
+                return "MEDIA_PAUSE";
+            case OP_MEDIA_RESUME:
+                return "MEDIA_RESUME";
+            case OP_TELEMETRY:
+                return "TELEMETRY";
+            default:
+                return "OP_" + opcode;
+        }
+    }
+
+    // Состояние звука по команде адресации для устройства ownDevice:
+    // обратились ко всем — звук и кнопка включены; к этому устройству — звук без кнопки;
+    // к другому — звук выключен, кнопка доступна; заглушили всех — всё выключено
+    public static int audioState(ControlMessage message, int ownDevice) {
+        if (ownDevice == NO_DEVICE) {
+            return AUDIO_UNCHANGED;
+        }
+        switch (message.opcode) {
+            case OP_ADDRESS_ALL:
+                return AUDIO_ON | AUDIO_BUTTON_ENABLED;
+            case OP_ADDRESS_DEVICE:
+                return message.deviceId == ownDevice ? AUDIO_ON : AUDIO_BUTTON_ENABLED;
+            case OP_MUTE_ALL:
+                return 0;
+            default:
+                return AUDIO_UNCHANGED;
+        }
+    }
+
+    // Десятичное число со знаком без исключений; NO_DEVICE, если строка не число
+    static int parseInt(String text) {
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && text.charAt(0) == '-') {
+            negative = true;
+            i = 1;
+        }
+        if (i == length || length - i > 9) {
+            return NO_DEVICE;
+        }
+        int value = 0;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_DEVICE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static void writeHeader(byte[] frame, int opcode, int seq) {
+        frame[0] = (byte) VERSION;
+        frame[1] = (byte) opcode;
+        frame[2] = (byte) (seq >>> 8);
+        frame[3] = (byte) seq;
+    }
+
+    private static void writeInt32(byte[] frame, int offset, int value) {
+        frame[offset] = (byte) (value >>> 24);
+        frame[offset + 1] = (byte) (value >>> 16);
+        frame[offset + 2] = (byte) (value >>> 8);
+        frame[offset + 3] = (byte) value;
+    }
+
+    private static void writeUint16(byte[] frame, int offset, int value) {
+        frame[offset] = (byte) (value >>> 8);
+        frame[offset + 1] = (byte) value;
+    }
+
+    private static int readUint16(ByteString frame, int offset) {
+        return ((frame.getByte(offset) & 0xFF) << 8) | (frame.getByte(offset + 1) & 0xFF);
+    }
+
+    private static int readInt32(ByteString frame, int offset) {
+        return ((frame.getByte(offset) & 0xFF) << 24)
+                | ((frame.getByte(offset + 1) & 0xFF) << 16)
+                | ((frame.getByte(offset + 2) & 0xFF) << 8)
+                | (frame.getByte(offset + 3) & 0xFF);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.mobileapp;
+
+import java.io.PrintWriter;
+
+// Журнал событий в памяти вместо Log.d на горячих путях: кольцо заранее выделенных
+// примитивных массивов, запись без строк и объектов. Уровень проверяется до всего остального,
+// форматирование происходит только при выгрузке (dumpsys или файл для разбора с объекта)
+public final class EventJournal {
+    // Уровни совпадают с android.util.Log
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // Тип события задаёт его уровень и смысл двух числовых полей
+    public enum Event {
+        CONTROL_FRAME(DEBUG, "opcode", "seq"),
+        CONTROL_TEXT(DEBUG, "opcode", "length"),
+        CONTROL_STALE(VERBOSE, "seq", "lastSeq"),
+        CONTROL_MALFORMED(WARN, "bytes", null),
+        ICE_CANDIDATE(VERBOSE, "session", "mline"),
+        ICE_STATE(DEBUG, "session", "state"),
+        CLIENT_STATE(INFO, "state", null),
+        AUDIO_ENABLED(DEBUG, "enabled", "trackReady"),
+        UID_SENT(INFO, "latencyUs", null),
+        TELEMETRY_SENT(DEBUG, "samples", "queuedBytes"),
+        TELEMETRY_BACKOFF(INFO, "queuedBytes", "delayMs"),
+        TELEMETRY_DROPPED(WARN, "samples", null),
+        MEDIA_STALLED(WARN, "session", "controlLost"),
+        FAILOVER(WARN, "reason", "session");
+
+        public final int level;
+        final String labelA;
+        final String labelB;
+
+        Event(int level, String labelA, String labelB) {
+            this.level = level;
+            this.labelA = labelA;
+            this.labelB = labelB;
+        }
+    }
+
+    private static final Event[] EVENTS = Event.values();
+    private static final EventJournal instance = new EventJournal(DEFAULT_CAPACITY);
+
+    private final long[] times;
+    private final byte[] types;
+    private final long[] valuesA;
+    private final long[] valuesB;
+    private int next;
+    private int size;
+    private long dropped;
+
+    private volatile int minLevel = DEBUG;
+
+    public static EventJournal get() {
+        return instance;
+    }
+
+    EventJournal(int capacity) {
+        times = new long[capacity];
+        types = new byte[capacity];
+        valuesA = new long[capacity];
+        valuesB = new long[capacity];
+    }
+
+    public void setMinLevel(int level) {
+        minLevel = level;
+    }
+
+    public boolean isLoggable(Event event) {
+        return event.level >= minLevel;
+    }
+
+    public void record(Event event, long a) {
+        record(event, a, 0);
+    }
+
+    public void record(Event event, long a, long b) {
+        if (event.level < minLevel) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (size == times.length) {
+                dropped++; // перезаписывается самое старое событие
+            } else {
+                size++;
+            }
+            times[next] = now;
+            types[next] = (byte) event.ordinal();
+            valuesA[next] = a;
+            valuesB[next] = b;
+            next = (next + 1) % times.length;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Не больше max последних событий, от старых к новым; время — относительно момента выгрузки
+    public void dump(String prefix, PrintWriter writer, int max) {
+        int n;
+        long[] t;
+        byte[] e;
+        long[] a;
+        long[] b;
+        long lost;
+        // Копия под замком, строки собираются уже без него
+        synchronized (this) {
+            n = Math.min(max, size);
+            t = new long[n];
+            e = new byte[n];
+            a = new long[n];
+            b = new long[n];
+            for (int i = 0; i < n; i++) {
+                int index = (next - n + i + times.length) % times.length;
+                t[i] = times[index];
+                e[i] = types[index];
+                a[i] = valuesA[index];
+                b[i] = valuesB[index];
+            }
+            lost = dropped + (size - n);
+        }
+        long now = System.nanoTime();
+        writer.println(prefix + "Event journal (" + n + " events, " + lost + " older not shown, level >= "
+                + levelName(minLevel) + "):");
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            Event event = EVENTS[e[i]];
+            line.setLength(0);
+            line.append(prefix).append("  -").append((now - t[i]) / 1_000_000).append("ms ")
+                    .append(levelName(event.level)).append(' ').append(event.name())
+                    .append(' ').append(event.labelA).append('=').append(a[i]);
+            if (event.labelB != null) {
+                line.append(' ').append(event.labelB).append('=').append(b[i]);
+            }
+            writer.println(line);
+        }
+    }
+
+    public synchronized void clear() {
+        next = 0;
+        size = 0;
+        dropped = 0;
+    }
+
+    private static char levelName(int level) {
+        switch (level) {
+            case VERBOSE:
+                return 'V';
+            case DEBUG:
+                return 'D';
+            case INFO:
+                return 'I';
+            case WARN:
+                return 'W';
+            default:
+                return 'E';
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.mobileapp;
+
+// Кольцевой буфер фиксированного размера для числовых отсчётов (без упаковки в объекты)
+public final class SampleRing {
+    private final long[] times;
+    private final double[] values;
+    private int next;
+    private int size;
+
+    public SampleRing(int capacity) {
+        times = new long[capacity];
+        values = new double[capacity];
+    }
+
+    public void add(long timeMs, double value) {
+        times[next] = timeMs;
+        values[next] = value;
+        next = (next + 1) % values.length;
+        if (size < values.length) {
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    // i = 0 — самый новый отсчёт
+    public double get(int i) {
+        return values[index(i)];
+    }
+
+    public long timeAt(int i) {
+        return times[index(i)];
+    }
+
+    public double last() {
+        return size == 0 ? Double.NaN : get(0);
+    }
+
+    // Среднее по последним n отсчётам
+    public double mean(int n) {
+        n = Math.min(n, size);
+        if (n == 0) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += get(i);
+        }
+        return sum / n;
+    }
+
+    public double max() {
+        double max = Double.NaN;
+        for (int i = 0; i < size; i++) {
+            double value = get(i);
+            if (Double.isNaN(max) || value > max) {
+                max = value;
+            }
+        }
+        return max;
+    }
+
+    public void clear() {
+        next = 0;
+        size = 0;
+    }
+
+    private int index(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        }
+        return (next - 1 - i + values.length) % values.length;
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.mobileapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Вспомогательные функции для работы с текстом SDP
+public final class SdpUtils {
+    // Механизмы защиты от потерь, согласованные в answer (битовая маска)
+    public static final int RESILIENCE_FEC = 1;  // Opus in-band FEC (useinbandfec=1)
+    public static final int RESILIENCE_RED = 2;  // избыточность RED (RFC 2198)
+    public static final int RESILIENCE_NACK = 4; // повторная передача по NACK
+
+    private SdpUtils() {
+    }
+
+    // Некоторые серверы возвращают SDP с экранированными переводами строк.
+    // Обычный answer возвращается как есть, без копирования
+    public static String normalizeAnswer(String sdp) {
+        if (sdp.indexOf("\\n") < 0) {
+            return sdp;
+        }
+        return sdp.replace("\\n", "\n");
+    }
+
+    // Значение атрибута "a=<name>:<value>" (первое вхождение) или null
+    public static String attribute(String sdp, String name) {
+        String prefix = "a=" + name + ":";
+        int start = sdp.startsWith(prefix) ? 0 : sdp.indexOf("\n" + prefix);
+        if (start < 0) {
+            return null;
+        }
+        if (start > 0) {
+            start++; // пропускаем '\n'
+        }
+        start += prefix.length();
+        int end = sdp.indexOf('\n', start);
+        if (end < 0) {
+            end = sdp.length();
+        }
+        if (end > start && sdp.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return sdp.substring(start, end);
+    }
+
+    // Фрагмент SDP (application/trickle-ice-sdpfrag, RFC 8840) для PATCH на ресурс WHEP.
+    // mids и candidates идут парами: кандидат candidates[i] относится к mids[i].
+    // endOfCandidatesMid != null добавляет a=end-of-candidates (сбор кандидатов завершён)
+    public static String trickleFragment(String iceUfrag, String icePwd,
+                                         List<String> mids, List<String> candidates,
+                                         String endOfCandidatesMid) {
+        StringBuilder sb = new StringBuilder(128 + candidates.size() * 96);
+        sb.append("a=ice-ufrag:").append(iceUfrag).append("\r\n");
+        sb.append("a=ice-pwd:").append(icePwd).append("\r\n");
+
+        // Кандидаты группируются по медиасекциям в порядке появления mid
+        String currentMid = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            String mid = mids.get(i);
+            if (currentMid == null || !currentMid.equals(mid)) {
+                currentMid = mid;
+                sb.append("m=audio 9 UDP/TLS/RTP/SAVPF 0\r\n");
+                sb.append("a=mid:").append(mid).append("\r\n");
+            }
+            sb.append("a=").append(candidates.get(i)).append("\r\n");
+        }
+        if (endOfCandidatesMid != null) {
+            if (currentMid == null) {
+                sb.append("m=audio 9 UDP/TLS/RTP/SAVPF 0\r\n");
+                sb.append("a=mid:").append(endOfCandidatesMid).append("\r\n");
+            }
+            sb.append("a=end-of-candidates\r\n");
+        }
+        return sb.toString();
+    }
+
+    // Применяет ответ сервера на ICE restart (sdpfrag с новыми ice-ufrag/ice-pwd и кандидатами)
+    // к текущему удалённому описанию: старые учётные данные и кандидаты заменяются новыми
+    public static String applyIceRestart(String remoteSdp, String fragment) {
+        String ufrag = attribute(fragment, "ice-ufrag");
+        String pwd = attribute(fragment, "ice-pwd");
+        StringBuilder candidates = new StringBuilder();
+        for (String line : fragment.split("\r?\n")) {
+            if (line.startsWith("a=candidate:") || line.equals("a=end-of-candidates")) {
+                candidates.append(line).append("\r\n");
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(remoteSdp.length() + candidates.length());
+        boolean candidatesInserted = false;
+        for (String line : remoteSdp.split("\r?\n")) {
+            if (line.isEmpty() || line.startsWith("a=candidate:") || line.equals("a=end-of-candidates")) {
+                continue;
+            }
+            if (ufrag != null && line.startsWith("a=ice-ufrag:")) {
+                line = "a=ice-ufrag:" + ufrag;
+            } else if (pwd != null && line.startsWith("a=ice-pwd:")) {
+                line = "a=ice-pwd:" + pwd;
+            }
+            sb.append(line).append("\r\n");
+            // Все медиасекции объединены (BUNDLE), кандидаты кладём в первую
+            if (!candidatesInserted && line.startsWith("a=mid:")) {
+                sb.append(candidates);
+                candidatesInserted = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    // Payload type кодека Opus ("a=rtpmap:<pt> opus/48000/2") или null
+    public static String opusPayloadType(String sdp) {
+        return payloadType(sdp, "opus");
+    }
+
+    // Payload type кодека по имени из a=rtpmap (без учёта регистра) или null
+    public static String payloadType(String sdp, String codec) {
+        String encoding = codec + "/";
+        for (String line : sdp.split("\r?\n")) {
+            if (!line.startsWith("a=rtpmap:")) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            if (space > 0 && line.regionMatches(true, space + 1, encoding, 0, encoding.length())) {
+                return line.substring("a=rtpmap:".length(), space);
+            }
+        }
+        return null;
+    }
+
+    // Задаёт параметры Opus в offer: stereo и maxaveragebitrate в a=fmtp (остальные параметры
+    // сохраняются), a=ptime и a=maxptime в аудиосекции. SDP без Opus возвращается как есть
+    public static String setOpusParameters(String sdp, int ptimeMs, int maxPtimeMs,
+                                           boolean stereo, int maxAverageBitrate) {
+        String pt = opusPayloadType(sdp);
+        if (pt == null) {
+            return sdp;
+        }
+        String rtpmapPrefix = "a=rtpmap:" + pt + " ";
+        String fmtpPrefix = "a=fmtp:" + pt + " ";
+        boolean hasFmtp = sdp.contains(fmtpPrefix);
+
+        StringBuilder sb = new StringBuilder(sdp.length() + 96);
+        boolean inAudio = false;
+        for (String line : sdp.split("\r?\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith("m=")) {
+                inAudio = line.startsWith("m=audio");
+            }
+            if (inAudio && (line.startsWith("a=ptime:") || line.startsWith("a=maxptime:"))) {
+                continue; // заменяются значениями профиля ниже
+            }
+            if (line.startsWith(fmtpPrefix)) {
+                line = fmtpPrefix + mergeFmtp(line.substring(fmtpPrefix.length()),
+                        "stereo=" + (stereo ? 1 : 0), "maxaveragebitrate=" + maxAverageBitrate);
+            }
+            sb.append(line).append("\r\n");
+            if (line.startsWith(rtpmapPrefix) && !hasFmtp) {
+                sb.append(fmtpPrefix).append(mergeFmtp("",
+                        "stereo=" + (stereo ? 1 : 0), "maxaveragebitrate=" + maxAverageBitrate)).append("\r\n");
+            }
+            if (line.startsWith(hasFmtp ? fmtpPrefix : rtpmapPrefix)) {
+                sb.append("a=ptime:").append(ptimeMs).append("\r\n");
+                sb.append("a=maxptime:").append(maxPtimeMs).append("\r\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    // Режим устойчивости к потерям в offer. Включён: useinbandfec=1 в fmtp Opus, a=rtcp-fb nack
+    // и RED первым в списке форматов, чтобы сервер выбрал его, если поддерживает.
+    // Выключен: RED (его добавляет field trial) убирается из offer, useinbandfec=0
+    // (libwebrtc по умолчанию предлагает FEC)
+    public static String setResilience(String sdp, boolean enabled) {
+        String opus = opusPayloadType(sdp);
+        if (opus == null) {
+            return sdp;
+        }
+        String red = payloadType(sdp, "red");
+        String opusFmtp = "a=fmtp:" + opus + " ";
+        String nack = "a=rtcp-fb:" + opus + " nack";
+        boolean hasNack = false;
+        for (String line : sdp.split("\r?\n")) {
+            if (line.equals(nack)) {
+                hasNack = true;
+                break;
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(sdp.length() + 64);
+        for (String line : sdp.split("\r?\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (red != null && !enabled && isPayloadAttribute(line, red)) {
+                continue;
+            }
+            if (line.startsWith("m=audio") && red != null) {
+                line = reorderPayloads(line, red, enabled);
+            } else if (line.startsWith(opusFmtp)) {
+                line = opusFmtp + mergeFmtp(line.substring(opusFmtp.length()),
+                        "useinbandfec=" + (enabled ? 1 : 0));
+            }
+            sb.append(line).append("\r\n");
+            if (enabled && !hasNack && line.startsWith("a=rtpmap:" + opus + " ")) {
+                sb.append(nack).append("\r\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    // Что из FEC/RED/NACK сервер принял (по answer), маска RESILIENCE_*
+    public static int negotiatedResilience(String answer) {
+        String opus = opusPayloadType(answer);
+        if (opus == null) {
+            return 0;
+        }
+        int result = 0;
+        String fmtp = "a=fmtp:" + opus + " ";
+        for (String line : answer.split("\r?\n")) {
+            if (line.startsWith(fmtp) && line.contains("useinbandfec=1")) {
+                result |= RESILIENCE_FEC;
+            } else if (line.equals("a=rtcp-fb:" + opus + " nack")) {
+                result |= RESILIENCE_NACK;
+            }
+        }
+        if (payloadType(answer, "red") != null) {
+            result |= RESILIENCE_RED;
+        }
+        return result;
+    }
+
+    public static String resilienceToString(int flags) {
+        if (flags == 0) {
+            return "none";
+        }
+        StringBuilder sb = new StringBuilder();
+        if ((flags & RESILIENCE_FEC) != 0) {
+            sb.append("fec ");
+        }
+        if ((flags & RESILIENCE_RED) != 0) {
+            sb.append("red ");
+        }
+        if ((flags & RESILIENCE_NACK) != 0) {
+            sb.append("nack ");
+        }
+        return sb.toString().trim();
+    }
+
+    private static boolean isPayloadAttribute(String line, String pt) {
+        return line.startsWith("a=rtpmap:" + pt + " ")
+                || line.startsWith("a=fmtp:" + pt + " ")
+                || line.startsWith("a=rtcp-fb:" + pt + " ");
+    }
+
+    // "m=audio 9 UDP/TLS/RTP/SAVPF 111 63 ..." — pt ставится первым (first) или удаляется
+    private static String reorderPayloads(String mLine, String pt, boolean first) {
+        String[] parts = mLine.split(" ");
+        if (parts.length < 4) {
+            return mLine;
+        }
+        StringBuilder sb = new StringBuilder(mLine.length());
+        sb.append(parts[0]).append(' ').append(parts[1]).append(' ').append(parts[2]);
+        if (first) {
+            sb.append(' ').append(pt);
+        }
+        for (int i = 3; i < parts.length; i++) {
+            if (!parts[i].equals(pt)) {
+                sb.append(' ').append(parts[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    // Параметры fmtp "k=v;k=v": значения из overrides заменяют одноимённые, остальные сохраняются
+    private static String mergeFmtp(String params, String... overrides) {
+        List<String> merged = new ArrayList<>();
+        for (String param : params.split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.isEmpty() || overridden(trimmed, overrides)) {
+                continue;
+            }
+            merged.add(trimmed);
+        }
+        for (String override : overrides) {
+            merged.add(override);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (String param : merged) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(param);
+        }
+        return sb.toString();
+    }
+
+    private static boolean overridden(String param, String[] overrides) {
+        for (String override : overrides) {
+            int eq = override.indexOf('=');
+            if (param.startsWith(override.substring(0, eq + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.mobileapp;
+
+// Пакет сводок телеметрии клиента за несколько интервалов. Значения хранятся уже в том виде,
+// в каком уходят в кадр (целые с насыщением), в заранее выделенных массивах: пакеты переиспользуются
+public final class TelemetryBatch {
+    // Значение метрики неизвестно (нет приёма, нет Wi-Fi, нет данных о батарее)
+    public static final int UNKNOWN = 0xFFFF;
+    public static final int UNKNOWN_BATTERY = 0xFF;
+    public static final int UNKNOWN_RSSI = -128;
+
+    final long[] sampledAtMs;
+    final int[] lossPermille;
+    final int[] jitterMs;
+    final int[] concealmentPermille;
+    final int[] reconnects;
+    final int[] batteryPercent;
+    final int[] rssiDbm;
+    final int[] state;
+    int size;
+
+    public TelemetryBatch(int capacity) {
+        if (capacity > 255) {
+            throw new IllegalArgumentException("capacity > 255: " + capacity);
+        }
+        sampledAtMs = new long[capacity];
+        lossPermille = new int[capacity];
+        jitterMs = new int[capacity];
+        concealmentPermille = new int[capacity];
+        reconnects = new int[capacity];
+        batteryPercent = new int[capacity];
+        rssiDbm = new int[capacity];
+        state = new int[capacity];
+    }
+
+    // Доли и задержки — за интервал; NaN означает «нет данных». false — пакет заполнен
+    public boolean add(long atMs, double lossRatio, double jitter, double concealmentRatio,
+                       int reconnectCount, int battery, int rssi, int clientState) {
+        if (isFull()) {
+            return false;
+        }
+        int i = size++;
+        sampledAtMs[i] = atMs;
+        lossPermille[i] = permille(lossRatio);
+        jitterMs[i] = Double.isNaN(jitter) ? UNKNOWN : clamp(Math.round(jitter), UNKNOWN - 1);
+        concealmentPermille[i] = permille(concealmentRatio);
+        reconnects[i] = clamp(reconnectCount, 255);
+        batteryPercent[i] = battery < 0 || battery > 100 ? UNKNOWN_BATTERY : battery;
+        // Без подключения к Wi-Fi Android отдаёт -127
+        rssiDbm[i] = rssi <= -127 || rssi >= 0 ? UNKNOWN_RSSI : rssi;
+        state[i] = clamp(clientState, 255);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return sampledAtMs.length;
+    }
+
+    public boolean isFull() {
+        return size == sampledAtMs.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public long sampledAtMs(int i) {
+        return sampledAtMs[i];
+    }
+
+    public int lossPermille(int i) {
+        return lossPermille[i];
+    }
+
+    public int jitterMs(int i) {
+        return jitterMs[i];
+    }
+
+    public int concealmentPermille(int i) {
+        return concealmentPermille[i];
+    }
+
+    public int reconnects(int i) {
+        return reconnects[i];
+    }
+
+    public int batteryPercent(int i) {
+        return batteryPercent[i];
+    }
+
+    public int rssiDbm(int i) {
+        return rssiDbm[i];
+    }
+
+    public int state(int i) {
+        return state[i];
+    }
+
+    private static int permille(double ratio) {
+        return Double.isNaN(ratio) ? UNKNOWN : clamp(Math.round(ratio * 1000), 1000);
+    }
+
+    private static int clamp(long value, int max) {
+        return (int) Math.max(0, Math.min(max, value));
+    }
+}
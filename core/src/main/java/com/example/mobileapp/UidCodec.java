@@ -0,0 +1,38 @@
+package com.example.mobileapp;
+
+// Кодирование UID пропуска в шестнадцатеричную строку по таблице, без String.format:
+// одна аллокация char[] и одна строка на касание
+public final class UidCodec {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private UidCodec() {
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            chars[j++] = HEX[b >>> 4];
+            chars[j++] = HEX[b & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    // Обратное преобразование (для кэша и текстового протокола). null — строка некорректна
+    public static byte[] fromHex(String hex) {
+        int length = hex.length();
+        if ((length & 1) != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
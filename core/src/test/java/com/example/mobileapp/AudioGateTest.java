@@ -0,0 +1,103 @@
+package com.example.mobileapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.*;
+
+public class AudioGateTest {
+    // Приём и таймеры без потока: задачи выполняются вручную
+    private static final class FakeHost implements AudioGate.Host {
+        final List<FutureTask<Void>> scheduled = new ArrayList<>();
+        boolean suspended;
+        int suspends;
+        long resumedAt = -1;
+
+        @Override
+        public boolean isReceiving() {
+            return !suspended;
+        }
+
+        @Override
+        public boolean isSuspended() {
+            return suspended;
+        }
+
+        @Override
+        public void suspend() {
+            suspends++;
+            suspended = true;
+        }
+
+        @Override
+        public void resume(long arrivalNanos) {
+            resumedAt = arrivalNanos;
+            suspended = false;
+        }
+
+        @Override
+        public Future<?> schedule(Runnable task, long delayMs) {
+            FutureTask<Void> future = new FutureTask<>(task, null);
+            scheduled.add(future);
+            return future;
+        }
+
+        void runScheduled() {
+            for (FutureTask<Void> task : new ArrayList<>(scheduled)) {
+                task.run();
+            }
+            scheduled.clear();
+        }
+    }
+
+    @Test
+    public void disable_suspendsAfterHoldOffAndEnableResumes() {
+        FakeHost host = new FakeHost();
+        AudioGate gate = new AudioGate(host, 3000);
+
+        gate.setEnabled(false, 10);
+        assertTrue(gate.isArmed());
+        assertEquals(0, host.suspends);
+
+        host.runScheduled();
+        assertEquals(1, host.suspends);
+        assertFalse(gate.isArmed());
+
+        gate.setEnabled(true, 42);
+        assertEquals(42, host.resumedAt);
+        assertFalse(host.isSuspended());
+    }
+
+    @Test
+    public void enableWithinHoldOff_cancelsWithoutSuspendOrResume() {
+        FakeHost host = new FakeHost();
+        AudioGate gate = new AudioGate(host, 3000);
+
+        gate.setEnabled(false, 10);
+        gate.setEnabled(true, 20);
+        assertFalse(gate.isArmed());
+        assertTrue(host.scheduled.get(0).isCancelled());
+
+        host.runScheduled();
+        assertEquals(0, host.suspends);
+        assertEquals(-1, host.resumedAt);
+    }
+
+    @Test
+    public void reset_reenablesAndDisarms() {
+        FakeHost host = new FakeHost();
+        AudioGate gate = new AudioGate(host, 3000);
+
+        gate.setEnabled(false, 10);
+        gate.reset();
+        assertTrue(gate.isEnabled());
+        assertFalse(gate.isArmed());
+
+        gate.arm();
+        assertFalse(gate.isArmed());
+    }
+}
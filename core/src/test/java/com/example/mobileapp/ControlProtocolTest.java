@@ -0,0 +1,163 @@
+package com.example.mobileapp;
+
+import org.junit.Test;
+
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class ControlProtocolTest {
+    private final ControlMessage message = new ControlMessage();
+
+    @Test
+    public void addressDevice_roundTrip() {
+        ByteString frame = ControlProtocol.encodeDevice(ControlProtocol.OP_ADDRESS_DEVICE, 7, 42);
+        assertTrue(ControlProtocol.decode(frame, message));
+        assertEquals(ControlProtocol.OP_ADDRESS_DEVICE, message.opcode);
+        assertEquals(7, message.seq);
+        assertEquals(42, message.deviceId);
+    }
+
+    @Test
+    public void identity_roundTrip() {
+        ByteString frame = ControlProtocol.encodeIdentity(3, 5, "Иванов Иван");
+        assertTrue(ControlProtocol.decode(frame, message));
+        assertEquals(ControlProtocol.OP_IDENTITY, message.opcode);
+        assertEquals(5, message.deviceId);
+        assertEquals("Иванов Иван", message.text());
+    }
+
+    @Test
+    public void mediaPaused_decodesWithoutPayload() {
+        ByteString frame = ControlProtocol.encodeSimple(ControlProtocol.OP_MEDIA_PAUSED, 4);
+        assertTrue(ControlProtocol.decode(frame, message));
+        assertEquals(ControlProtocol.OP_MEDIA_PAUSED, message.opcode);
+        assertEquals(ControlProtocol.NO_DEVICE, message.deviceId);
+        assertNull(message.text());
+    }
+
+    @Test
+    public void mediaPause_carriesResourcePath() {
+        ByteString frame = ControlProtocol.encodeMediaPause(ControlProtocol.OP_MEDIA_PAUSE, 5, "/stream/whep/7");
+        assertTrue(ControlProtocol.decode(frame, message));
+        assertEquals(ControlProtocol.OP_MEDIA_PAUSE, message.opcode);
+        assertEquals("/stream/whep/7", message.text());
+        assertFalse(ControlProtocol.decode(frame.substring(0, frame.size() - 1), message));
+
+        assertEquals(ControlProtocol.encodeSimple(ControlProtocol.OP_MEDIA_RESUME, 6),
+                ControlProtocol.encodeMediaPause(ControlProtocol.OP_MEDIA_RESUME, 6, null));
+    }
+
+    @Test
+    public void selectChannel_roundTripAndText() {
+        ByteString frame = ControlProtocol.encodeChannel(9, "interpreter_en");
+        assertTrue(ControlProtocol.decode(frame, message));
+        assertEquals(ControlProtocol.OP_SELECT_CHANNEL, message.opcode);
+        assertEquals("interpreter_en", message.text());
+        assertFalse(ControlProtocol.decode(frame.substring(0, frame.size() - 1), message));
+
+        assertTrue(ControlProtocol.decodeText("CH:stream", false, message));
+        assertEquals(ControlProtocol.OP_SELECT_CHANNEL, message.opcode);
+        assertEquals("stream", message.text());
+    }
+
+    @Test
+    public void decode_rejectsTruncatedAndForeignFrames() {
+        ByteString frame = ControlProtocol.encodeDevice(ControlProtocol.OP_ASSIGN_DEVICE, 1, 9);
+        assertFalse(ControlProtocol.decode(frame.substring(0, 6), message));
+        assertFalse(ControlProtocol.decode(ByteString.encodeUtf8("12"), message));
+    }
+
+    @Test
+    public void decodeText_keepsLegacySemantics() {
+        assertTrue(ControlProtocol.decodeText("12", true, message));
+        assertEquals(ControlProtocol.OP_ASSIGN_DEVICE, message.opcode);
+        assertEquals(12, message.deviceId);
+
+        assertTrue(ControlProtocol.decodeText("0", false, message));
+        assertEquals(ControlProtocol.OP_ADDRESS_ALL, message.opcode);
+
+        assertTrue(ControlProtocol.decodeText("-1", false, message));
+        assertEquals(ControlProtocol.OP_MUTE_ALL, message.opcode);
+
+        assertTrue(ControlProtocol.decodeText("12", false, message));
+        assertEquals(ControlProtocol.OP_ADDRESS_DEVICE, message.opcode);
+
+        assertTrue(ControlProtocol.decodeText("FIO:Петров", true, message));
+        assertEquals(ControlProtocol.OP_IDENTITY, message.opcode);
+        assertEquals("Петров", message.text());
+
+        assertFalse(ControlProtocol.decodeText("hello", false, message));
+    }
+
+    @Test
+    public void isNewer_handlesWrapAround() {
+        assertTrue(ControlProtocol.isNewer(2, 1));
+        assertFalse(ControlProtocol.isNewer(1, 1));
+        assertFalse(ControlProtocol.isNewer(1, 2));
+        assertTrue(ControlProtocol.isNewer(0, 0xFFFF));
+    }
+
+    @Test
+    public void audioState_followsAddressing() {
+        ControlProtocol.decodeText("0", false, message);
+        assertEquals(ControlProtocol.AUDIO_ON | ControlProtocol.AUDIO_BUTTON_ENABLED,
+                ControlProtocol.audioState(message, 7));
+        ControlProtocol.decodeText("7", false, message);
+        assertEquals(ControlProtocol.AUDIO_ON, ControlProtocol.audioState(message, 7));
+        ControlProtocol.decodeText("8", false, message);
+        assertEquals(ControlProtocol.AUDIO_BUTTON_ENABLED, ControlProtocol.audioState(message, 7));
+        ControlProtocol.decodeText("-1", false, message);
+        assertEquals(0, ControlProtocol.audioState(message, 7));
+        assertEquals(ControlProtocol.AUDIO_UNCHANGED, ControlProtocol.audioState(message, ControlProtocol.NO_DEVICE));
+    }
+
+    @Test
+    public void telemetry_roundTripWithAgesAndClamping() {
+        TelemetryBatch batch = new TelemetryBatch(4);
+        assertTrue(batch.add(10_000, 0.0125, 17.4, 0.2, 2, 87, -61, 2));
+        assertTrue(batch.add(15_000, Double.NaN, Double.NaN, 1.5, 300, -1, 0, 3));
+        ByteString frame = ControlProtocol.encodeTelemetry(11, batch, 20_000);
+        assertEquals(4 + 1 + 2 * ControlProtocol.TELEMETRY_RECORD_SIZE, frame.size());
+        // Клиентский кадр не разбирается как серверная команда
+        assertFalse(ControlProtocol.decode(frame, message));
+
+        TelemetryBatch out = new TelemetryBatch(4);
+        assertTrue(ControlProtocol.decodeTelemetry(frame, out, 100_000));
+        assertEquals(2, out.size());
+        assertEquals(90_000, out.sampledAtMs(0));
+        assertEquals(13, out.lossPermille(0));
+        assertEquals(17, out.jitterMs(0));
+        assertEquals(200, out.concealmentPermille(0));
+        assertEquals(2, out.reconnects(0));
+        assertEquals(87, out.batteryPercent(0));
+        assertEquals(-61, out.rssiDbm(0));
+        assertEquals(2, out.state(0));
+
+        assertEquals(95_000, out.sampledAtMs(1));
+        assertEquals(TelemetryBatch.UNKNOWN, out.lossPermille(1));
+        assertEquals(TelemetryBatch.UNKNOWN, out.jitterMs(1));
+        assertEquals(1000, out.concealmentPermille(1));
+        assertEquals(255, out.reconnects(1));
+        assertEquals(TelemetryBatch.UNKNOWN_BATTERY, out.batteryPercent(1));
+        assertEquals(TelemetryBatch.UNKNOWN_RSSI, out.rssiDbm(1));
+
+        assertFalse(ControlProtocol.decodeTelemetry(frame.substring(0, frame.size() - 1), out, 0));
+        assertFalse(ControlProtocol.decodeTelemetry(frame, new TelemetryBatch(1), 0));
+    }
+
+    @Test
+    public void subprotocol_textOfferedFirstAndBinaryOnlyWhenSelected() {
+        // Стек, возвращающий первый предложенный подпротокол, оставляет клиента на текстовом
+        String first = ControlProtocol.SUBPROTOCOL_OFFER.split(",")[0].trim();
+        assertEquals(ControlProtocol.SUBPROTOCOL_TEXT, first);
+        assertFalse(ControlProtocol.isBinarySelected(first));
+
+        assertTrue(ControlProtocol.isBinarySelected(ControlProtocol.SUBPROTOCOL_BINARY));
+        assertTrue(ControlProtocol.isBinarySelected(" " + ControlProtocol.SUBPROTOCOL_BINARY));
+        assertFalse(ControlProtocol.isBinarySelected(null));
+        assertFalse(ControlProtocol.isBinarySelected(""));
+        // Эхо всего заголовка запроса — не выбор
+        assertFalse(ControlProtocol.isBinarySelected(ControlProtocol.SUBPROTOCOL_OFFER));
+    }
+}
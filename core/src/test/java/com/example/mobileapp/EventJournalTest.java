@@ -0,0 +1,55 @@
+package com.example.mobileapp;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class EventJournalTest {
+    private static String dump(EventJournal journal, int max) {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        journal.dump("", writer, max);
+        writer.flush();
+        return out.toString();
+    }
+
+    @Test
+    public void record_skipsEventsBelowLevel() {
+        EventJournal journal = new EventJournal(8);
+        journal.record(EventJournal.Event.ICE_CANDIDATE, 1, 0);
+        assertEquals(0, journal.size());
+
+        journal.setMinLevel(EventJournal.VERBOSE);
+        assertTrue(journal.isLoggable(EventJournal.Event.ICE_CANDIDATE));
+        journal.record(EventJournal.Event.ICE_CANDIDATE, 1, 0);
+        assertEquals(1, journal.size());
+    }
+
+    @Test
+    public void ring_keepsNewestInOrder() {
+        EventJournal journal = new EventJournal(3);
+        for (int seq = 1; seq <= 5; seq++) {
+            journal.record(EventJournal.Event.CONTROL_FRAME, 0x10, seq);
+        }
+        assertEquals(3, journal.size());
+        String text = dump(journal, 10);
+        assertTrue(text.contains("3 events, 2 older not shown"));
+        assertFalse(text.contains("seq=2"));
+        assertTrue(text.indexOf("seq=3") < text.indexOf("seq=4"));
+        assertTrue(text.indexOf("seq=4") < text.indexOf("seq=5"));
+    }
+
+    @Test
+    public void dump_formatsFieldsAndLimits() {
+        EventJournal journal = new EventJournal(8);
+        journal.record(EventJournal.Event.UID_SENT, 1234);
+        journal.record(EventJournal.Event.AUDIO_ENABLED, 1, 0);
+        String text = dump(journal, 1);
+        assertTrue(text.contains("1 events, 1 older not shown"));
+        assertTrue(text.contains("D AUDIO_ENABLED enabled=1 trackReady=0"));
+        assertTrue(dump(journal, 8).contains("I UID_SENT latencyUs=1234\n"));
+    }
+}
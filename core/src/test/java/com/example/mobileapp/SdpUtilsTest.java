@@ -0,0 +1,69 @@
+package com.example.mobileapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SdpUtilsTest {
+    private static final String OFFER = "v=0\r\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111 63\r\n"
+            + "a=mid:0\r\n"
+            + "a=recvonly\r\n"
+            + "a=rtpmap:111 opus/48000/2\r\n"
+            + "a=rtcp-fb:111 transport-cc\r\n"
+            + "a=fmtp:111 minptime=10;useinbandfec=1;stereo=1\r\n"
+            + "a=rtpmap:63 red/48000/2\r\n"
+            + "a=ptime:60\r\n";
+
+    @Test
+    public void opusPayloadType_findsOpus() {
+        assertEquals("111", SdpUtils.opusPayloadType(OFFER));
+        assertNull(SdpUtils.opusPayloadType("v=0\r\nm=audio 9 UDP/TLS/RTP/SAVPF 0\r\n"));
+    }
+
+    @Test
+    public void setOpusParameters_mergesFmtpAndReplacesPtime() {
+        String sdp = SdpUtils.setOpusParameters(OFFER, 10, 20, false, 32000);
+        assertEquals("111 minptime=10;useinbandfec=1;stereo=0;maxaveragebitrate=32000",
+                SdpUtils.attribute(sdp, "fmtp"));
+        assertEquals("10", SdpUtils.attribute(sdp, "ptime"));
+        assertEquals("20", SdpUtils.attribute(sdp, "maxptime"));
+        assertEquals(sdp.indexOf("a=ptime:"), sdp.lastIndexOf("a=ptime:"));
+    }
+
+    @Test
+    public void setOpusParameters_addsMissingFmtp() {
+        String sdp = SdpUtils.setOpusParameters("m=audio 9 UDP/TLS/RTP/SAVPF 111\r\na=rtpmap:111 opus/48000/2\r\n",
+                20, 40, false, 40000);
+        assertEquals("111 stereo=0;maxaveragebitrate=40000", SdpUtils.attribute(sdp, "fmtp"));
+        assertEquals("20", SdpUtils.attribute(sdp, "ptime"));
+    }
+
+    @Test
+    public void setResilience_enabledPrefersRedAndAddsFecAndNack() {
+        String sdp = SdpUtils.setResilience(OFFER, true);
+        assertTrue(sdp.contains("m=audio 9 UDP/TLS/RTP/SAVPF 63 111\r\n"));
+        assertTrue(sdp.contains("a=rtcp-fb:111 nack\r\n"));
+        assertTrue(SdpUtils.attribute(sdp, "fmtp").contains("useinbandfec=1"));
+    }
+
+    @Test
+    public void setResilience_disabledStripsRedAndFec() {
+        String sdp = SdpUtils.setResilience(OFFER, false);
+        assertTrue(sdp.contains("m=audio 9 UDP/TLS/RTP/SAVPF 111\r\n"));
+        assertNull(SdpUtils.payloadType(sdp, "red"));
+        assertEquals("111 minptime=10;stereo=1;useinbandfec=0", SdpUtils.attribute(sdp, "fmtp"));
+        assertFalse(sdp.contains("nack"));
+        assertEquals(0, SdpUtils.negotiatedResilience(sdp));
+    }
+
+    @Test
+    public void negotiatedResilience_readsAnswer() {
+        String answer = "m=audio 9 UDP/TLS/RTP/SAVPF 111\r\n"
+                + "a=rtpmap:111 opus/48000/2\r\n"
+                + "a=rtcp-fb:111 nack\r\n"
+                + "a=fmtp:111 minptime=10;useinbandfec=1\r\n";
+        assertEquals(SdpUtils.RESILIENCE_FEC | SdpUtils.RESILIENCE_NACK, SdpUtils.negotiatedResilience(answer));
+        assertEquals("fec nack", SdpUtils.resilienceToString(SdpUtils.negotiatedResilience(answer)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.mobileapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+
+import static org.junit.Assert.*;
+
+public class StandInServerTest {
+    private final OkHttpClient client = new OkHttpClient();
+    private final BlockingQueue<ByteString> frames = new LinkedBlockingQueue<>();
+    private final ControlMessage message = new ControlMessage();
+    private StandInServer server;
+    private WebSocket socket;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInServer(true);
+        server.start();
+        socket = client.newWebSocket(new Request.Builder()
+                .url(server.controlUrl())
+                .header("Sec-WebSocket-Protocol", ControlProtocol.SUBPROTOCOL_OFFER)
+                .build(), new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                frames.add(ByteString.encodeUtf8(String.valueOf(response.header("Sec-WebSocket-Protocol"))));
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, ByteString bytes) {
+                frames.add(bytes);
+            }
+        });
+        assertEquals(ControlProtocol.SUBPROTOCOL_BINARY, frames.poll(5, TimeUnit.SECONDS).utf8());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        socket.cancel();
+        server.close();
+        client.dispatcher().executorService().shutdown();
+    }
+
+    @Test
+    public void mediaPause_acknowledgedAndResumed() throws Exception {
+        assertTrue(socket.send(ControlProtocol.encodeSimple(ControlProtocol.OP_MEDIA_PAUSE, 1)));
+        ByteString ack = frames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(ack);
+        assertTrue(ControlProtocol.decode(ack, message));
+        assertEquals(ControlProtocol.OP_MEDIA_PAUSED, message.opcode);
+        assertEquals(1, server.pausedCount());
+
+        assertTrue(socket.send(ControlProtocol.encodeSimple(ControlProtocol.OP_MEDIA_RESUME, 2)));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.pausedCount() != 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, server.pausedCount());
+    }
+
+    @Test
+    public void mediaPause_perResourceEchoesPath() throws Exception {
+        assertTrue(socket.send(ControlProtocol.encodeMediaPause(ControlProtocol.OP_MEDIA_PAUSE, 1, "/stream/whep/1")));
+        assertTrue(socket.send(ControlProtocol.encodeMediaPause(ControlProtocol.OP_MEDIA_PAUSE, 2, "/floor/whep/2")));
+        for (String expected : new String[]{"/stream/whep/1", "/floor/whep/2"}) {
+            ByteString ack = frames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(ack);
+            assertTrue(ControlProtocol.decode(ack, message));
+            assertEquals(ControlProtocol.OP_MEDIA_PAUSED, message.opcode);
+            assertEquals(expected, message.text());
+        }
+        assertEquals(2, server.pausedCount());
+
+        assertTrue(socket.send(ControlProtocol.encodeMediaPause(ControlProtocol.OP_MEDIA_RESUME, 3, "/stream/whep/1")));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.isPaused("/stream/whep/1") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(server.isPaused("/stream/whep/1"));
+        assertTrue(server.isPaused("/floor/whep/2"));
+    }
+}
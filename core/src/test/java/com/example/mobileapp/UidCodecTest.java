@@ -0,0 +1,23 @@
+package com.example.mobileapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UidCodecTest {
+    @Test
+    public void toHex_uppercasePairs() {
+        byte[] uid = {0x04, (byte) 0xA1, 0x7F, (byte) 0xFF, 0x00};
+        assertEquals("04A17FFF00", UidCodec.toHex(uid));
+        assertEquals("", UidCodec.toHex(new byte[0]));
+    }
+
+    @Test
+    public void fromHex_roundTripAndRejectsGarbage() {
+        byte[] uid = {0x04, (byte) 0xA1, 0x7F, (byte) 0xFF, 0x00, 0x12, 0x34};
+        assertArrayEquals(uid, UidCodec.fromHex(UidCodec.toHex(uid)));
+        assertArrayEquals(new byte[]{(byte) 0xAB}, UidCodec.fromHex("ab"));
+        assertNull(UidCodec.fromHex("ABC"));
+        assertNull(UidCodec.fromHex("ZZ"));
+    }
+}
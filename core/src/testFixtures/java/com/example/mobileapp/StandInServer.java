@@ -0,0 +1,259 @@
+package com.example.mobileapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.ByteString;
+
+// Локальная замена сервера для симулятора и macrobenchmark: WebSocket управления (UID -> номер
+// устройства и ФИО, рассылка команд адресации, пауза пересылки MEDIA_PAUSE/MEDIA_RESUME по ресурсу
+// WHEP или всему устройству с подтверждением MEDIA_PAUSED в бинарном протоколе) и WHEP-эндпоинт,
+// который принимает offer и отвечает заготовленным answer. Медиа не передаётся: меряется только
+// сигнализация
+public final class StandInServer implements Closeable {
+    private static final String ANSWER = "v=0\r\n"
+            + "o=- 1 1 IN IP4 127.0.0.1\r\n"
+            + "s=-\r\n"
+            + "t=0 0\r\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111\r\n"
+            + "c=IN IP4 127.0.0.1\r\n"
+            + "a=ice-ufrag:stub\r\n"
+            + "a=ice-pwd:stubstubstubstubstubstub\r\n"
+            + "a=fingerprint:sha-256 00:11:22:33:44:55:66:77:88:99:AA:BB:CC:DD:EE:FF:"
+            + "00:11:22:33:44:55:66:77:88:99:AA:BB:CC:DD:EE:FF\r\n"
+            + "a=setup:passive\r\n"
+            + "a=mid:0\r\n"
+            + "a=rtcp-mux\r\n"
+            + "a=sendonly\r\n"
+            + "a=rtpmap:111 opus/48000/2\r\n"
+            + "a=fmtp:111 minptime=10;useinbandfec=1\r\n";
+
+    private final boolean binary;
+    private final MockWebServer control = new MockWebServer();
+    private final MockWebServer whep = new MockWebServer();
+    private final Set<WebSocket> sockets = ConcurrentHashMap.newKeySet();
+    // Приостановленные подписки по устройствам: пути ресурсов WHEP, "" — все подписки устройства
+    private final Map<WebSocket, Set<String>> paused = new ConcurrentHashMap<>();
+    private final Map<ByteString, Integer> devices = new ConcurrentHashMap<>();
+    private final AtomicInteger nextDevice = new AtomicInteger(1);
+    private final AtomicInteger nextResource = new AtomicInteger();
+    private final AtomicInteger offers = new AtomicInteger();
+    // Время отправки каждой рассылки (System.nanoTime), по порядку
+    private long[] broadcastSentNanos = new long[64];
+    private int broadcastCount;
+    private int seq;
+
+    public StandInServer(boolean binary) {
+        this.binary = binary;
+    }
+
+    // Случайные свободные порты на localhost
+    public void start() throws IOException {
+        start(InetAddress.getByName("localhost"), 0, 0);
+    }
+
+    // Приложение ходит на фиксированные порты (8080 и 8889), поэтому на устройстве заглушка
+    // поднимается на них же
+    public void start(InetAddress address, int controlPort, int whepPort) throws IOException {
+        control.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getHeader("Upgrade") == null) {
+                    return new MockResponse(); // HEAD-проверка доступности
+                }
+                return new MockResponse()
+                        .setHeader("Sec-WebSocket-Protocol",
+                                binary ? ControlProtocol.SUBPROTOCOL_BINARY : ControlProtocol.SUBPROTOCOL_TEXT)
+                        .withWebSocketUpgrade(new ControlSocket());
+            }
+        });
+        whep.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                switch (request.getMethod()) {
+                    case "POST":
+                        offers.incrementAndGet();
+                        return new MockResponse()
+                                .setResponseCode(201)
+                                .setHeader("Content-Type", "application/sdp")
+                                .setHeader("Location", "/whep/resource/" + nextResource.incrementAndGet())
+                                .setHeader("ETag", "\"1\"")
+                                .setBody(ANSWER);
+                    case "PATCH":
+                        return new MockResponse().setResponseCode(204);
+                    default:
+                        return new MockResponse(); // DELETE, HEAD
+                }
+            }
+        });
+        control.start(address, controlPort);
+        whep.start(address, whepPort);
+    }
+
+    public String controlUrl() {
+        return "ws://" + control.getHostName() + ":" + control.getPort() + "/";
+    }
+
+    public String whepBaseUrl() {
+        return "http://" + whep.getHostName() + ":" + whep.getPort();
+    }
+
+    public int connectedCount() {
+        return sockets.size();
+    }
+
+    // Сколько подписок (или устройств целиком) сейчас на паузе пересылки
+    public int pausedCount() {
+        int count = 0;
+        for (Set<String> resources : paused.values()) {
+            count += resources.size();
+        }
+        return count;
+    }
+
+    public boolean isPaused(String resource) {
+        for (Set<String> resources : paused.values()) {
+            if (resources.contains(resource)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Сколько offer принято WHEP-эндпоинтом с запуска
+    public int offerCount() {
+        return offers.get();
+    }
+
+    // Рассылает команду адресации всем подключённым; время отправки запоминается до отправки
+    public synchronized void broadcast(int opcode, int deviceId) {
+        if (broadcastCount == broadcastSentNanos.length) {
+            broadcastSentNanos = Arrays.copyOf(broadcastSentNanos, broadcastCount * 2);
+        }
+        broadcastSentNanos[broadcastCount++] = System.nanoTime();
+        seq = (seq + 1) & 0xFFFF;
+        ByteString frame = ControlProtocol.encodeDevice(opcode, seq, deviceId);
+        String text = opcode == ControlProtocol.OP_ADDRESS_ALL ? "0"
+                : opcode == ControlProtocol.OP_MUTE_ALL ? "-1" : String.valueOf(deviceId);
+        for (WebSocket socket : sockets) {
+            if (binary) {
+                socket.send(frame);
+            } else {
+                socket.send(text);
+            }
+        }
+    }
+
+    public synchronized long broadcastSentAt(int index) {
+        return index < broadcastCount ? broadcastSentNanos[index] : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (WebSocket socket : sockets) {
+            socket.cancel();
+        }
+        control.shutdown();
+        whep.shutdown();
+    }
+
+    private synchronized int nextSeq() {
+        seq = (seq + 1) & 0xFFFF;
+        return seq;
+    }
+
+    private void assign(WebSocket socket, ByteString uid) {
+        int device = devices.computeIfAbsent(uid, key -> nextDevice.getAndIncrement());
+        String fio = "Участник " + device;
+        if (binary) {
+            socket.send(ControlProtocol.encodeDevice(ControlProtocol.OP_ASSIGN_DEVICE, nextSeq(), device));
+            socket.send(ControlProtocol.encodeIdentity(nextSeq(), device, fio));
+        } else {
+            socket.send(String.valueOf(device));
+            socket.send("FIO:" + fio);
+        }
+    }
+
+    private class ControlSocket extends WebSocketListener {
+        private final ControlMessage message = new ControlMessage();
+
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            sockets.add(webSocket);
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, ByteString bytes) {
+            if (bytes.size() < 4) {
+                return;
+            }
+            switch (bytes.getByte(1) & 0xFF) {
+                case ControlProtocol.OP_UID:
+                    // Заголовок из 4 байт, uint8 длина, байты UID
+                    if (bytes.size() > 5) {
+                        int length = bytes.getByte(4) & 0xFF;
+                        assign(webSocket, bytes.substring(5, Math.min(bytes.size(), 5 + length)));
+                    }
+                    break;
+                case ControlProtocol.OP_MEDIA_PAUSE:
+                    if (ControlProtocol.decode(bytes, message)) {
+                        String resource = message.text();
+                        paused.computeIfAbsent(webSocket, key -> ConcurrentHashMap.newKeySet())
+                                .add(resource != null ? resource : "");
+                        webSocket.send(ControlProtocol.encodeMediaPause(
+                                ControlProtocol.OP_MEDIA_PAUSED, nextSeq(), resource));
+                    }
+                    break;
+                case ControlProtocol.OP_MEDIA_RESUME:
+                    if (ControlProtocol.decode(bytes, message)) {
+                        String resource = message.text();
+                        Set<String> resources = paused.get(webSocket);
+                        if (resource == null) {
+                            paused.remove(webSocket);
+                        } else if (resources != null) {
+                            resources.remove(resource);
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            if (text.startsWith("UID:")) {
+                byte[] uid = UidCodec.fromHex(text.substring(4));
+                if (uid != null) {
+                    assign(webSocket, ByteString.of(uid));
+                }
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            sockets.remove(webSocket);
+            paused.remove(webSocket);
+            webSocket.close(1000, null);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            sockets.remove(webSocket);
+            paused.remove(webSocket);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.mobileapp;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Нагрузочный прогон: N виртуальных устройств подключаются к серверу (или к локальной заглушке),
+// проходят вход по пропуску и слушают рассылки. В конце печатаются распределения:
+//   connect   — открытие WebSocket управления
+//   device    — от касания до номера устройства (ФИО в текстовом протоколе)
+//   whep      — от касания до ответа 201 на offer
+//   join      — от касания до готовности обоих
+//   pause     — от MEDIA_PAUSE до MEDIA_PAUSED (бинарный протокол); без ответа — ошибка
+//   broadcast — от отправки рассылки сервером до применения на устройстве; с внешним сервером
+//               время отправки неизвестно, и считается разброс относительно первого получателя
+public final class FleetSimulator {
+
+    static final class Config {
+        int clients = 1000;
+        String server; // null — локальная заглушка
+        String path = "stream";
+        int broadcasts = 20;
+        long broadcastIntervalMs = 100;
+        long rampMs = 1000;
+        long holdSeconds = 10;
+        long timeoutSeconds = 30;
+        boolean text;
+        String controlUrl;
+        String whepUrl;
+    }
+
+    static final class Metrics {
+        final LatencyRecorder connect = new LatencyRecorder("connect");
+        final LatencyRecorder deviceNumber = new LatencyRecorder("device");
+        final LatencyRecorder whep = new LatencyRecorder("whep");
+        final LatencyRecorder join = new LatencyRecorder("join");
+        final LatencyRecorder pause = new LatencyRecorder("pause");
+        final LatencyRecorder broadcast = new LatencyRecorder("broadcast");
+        // Внешний сервер: моменты получения по номеру рассылки
+        private final Map<Integer, LatencyRecorder> arrivals = new ConcurrentHashMap<>();
+        private final Map<String, AtomicInteger> errors = new ConcurrentHashMap<>();
+        private final StandInServer standIn;
+
+        Metrics(StandInServer standIn) {
+            this.standIn = standIn;
+        }
+
+        void onBroadcastApplied(int index, long appliedAtNanos) {
+            long sentAt = standIn != null ? standIn.broadcastSentAt(index) : -1;
+            if (sentAt >= 0) {
+                broadcast.add(appliedAtNanos - sentAt);
+            } else {
+                arrivals.computeIfAbsent(index, i -> new LatencyRecorder("arrival")).add(appliedAtNanos);
+            }
+        }
+
+        void recordError(Exception e) {
+            String key = e.getClass().getSimpleName() + ": " + e.getMessage();
+            errors.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+        }
+
+        void print() {
+            for (LatencyRecorder recorder : arrivals.values()) {
+                long[] times = recorder.snapshot();
+                long first = Long.MAX_VALUE;
+                for (long time : times) {
+                    first = Math.min(first, time);
+                }
+                for (long time : times) {
+                    broadcast.add(time - first);
+                }
+            }
+            System.out.println(connect.report());
+            System.out.println(deviceNumber.report());
+            System.out.println(whep.report());
+            System.out.println(join.report());
+            System.out.println(pause.report());
+            System.out.println(broadcast.report());
+            errors.forEach((error, count) -> System.out.println("error x" + count + ": " + error));
+        }
+    }
+
+    private FleetSimulator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = parse(args);
+        StandInServer standIn = null;
+        if (config.server == null) {
+            standIn = new StandInServer(!config.text);
+            standIn.start();
+            config.controlUrl = standIn.controlUrl();
+            config.whepUrl = standIn.whepBaseUrl() + "/" + config.path;
+            System.out.println("Локальная заглушка: " + config.controlUrl + " " + config.whepUrl);
+        } else {
+            // Те же адреса, что у приложения (HttpTransport)
+            config.controlUrl = "ws://" + config.server + ":8080";
+            config.whepUrl = "http://" + config.server + ":8889/" + config.path;
+        }
+        try {
+            run(config, standIn);
+        } finally {
+            if (standIn != null) {
+                standIn.close();
+            }
+        }
+    }
+
+    private static void run(Config config, StandInServer standIn) throws InterruptedException {
+        Metrics metrics = new Metrics(standIn);
+        CountDownLatch joined = new CountDownLatch(config.clients);
+        CountDownLatch finished = new CountDownLatch(1);
+        long started = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(config.timeoutSeconds))
+                    .build();
+            // Устройства подключаются не одновременно, а в пределах окна, как люди у входа
+            List<Long> offsets = new ArrayList<>();
+            for (int i = 0; i < config.clients; i++) {
+                offsets.add(config.rampMs > 0 ? ThreadLocalRandom.current().nextLong(config.rampMs) : 0);
+            }
+            for (int i = 0; i < config.clients; i++) {
+                SimulatedClient client = new SimulatedClient(i, config, http, metrics, joined, finished);
+                long delay = offsets.get(i);
+                threads.execute(() -> {
+                    try {
+                        Thread.sleep(delay);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    client.run();
+                });
+            }
+            if (!joined.await(config.rampMs + TimeUnit.SECONDS.toMillis(config.timeoutSeconds), TimeUnit.MILLISECONDS)) {
+                System.out.println("Не все устройства вошли за отведённое время");
+            }
+            System.out.printf("Вход: %d устройств за %d мс%n", config.clients,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            if (standIn != null) {
+                broadcast(config, standIn);
+                Thread.sleep(Math.min(TimeUnit.SECONDS.toMillis(config.holdSeconds), 2000));
+            } else {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(config.holdSeconds));
+            }
+            finished.countDown();
+        }
+        metrics.print();
+    }
+
+    // Рассылки по кругу: обращение ко всем, к случайному устройству, заглушить всех
+    private static void broadcast(Config config, StandInServer standIn) throws InterruptedException {
+        System.out.println("Рассылок: " + config.broadcasts + ", подключено " + standIn.connectedCount());
+        for (int i = 0; i < config.broadcasts; i++) {
+            switch (i % 3) {
+                case 0:
+                    standIn.broadcast(ControlProtocol.OP_ADDRESS_ALL, 0);
+                    break;
+                case 1:
+                    standIn.broadcast(ControlProtocol.OP_ADDRESS_DEVICE,
+                            1 + ThreadLocalRandom.current().nextInt(Math.max(1, config.clients)));
+                    break;
+                default:
+                    standIn.broadcast(ControlProtocol.OP_MUTE_ALL, 0);
+                    break;
+            }
+            Thread.sleep(config.broadcastIntervalMs);
+        }
+    }
+
+    private static Config parse(String[] args) {
+        Config config = new Config();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (args[i]) {
+                case "--clients":
+                    config.clients = Integer.parseInt(value);
+                    i++;
+                    break;
+                case "--server":
+                    config.server = value;
+                    i++;
+                    break;
+                case "--path":
+                    config.path = value;
+                    i++;
+                    break;
+                case "--broadcasts":
+                    config.broadcasts = Integer.parseInt(value);
+                    i++;
+                    break;
+                case "--interval-ms":
+                    config.broadcastIntervalMs = Long.parseLong(value);
+                    i++;
+                    break;
+                case "--ramp-ms":
+                    config.rampMs = Long.parseLong(value);
+                    i++;
+                    break;
+                case "--hold-s":
+                    config.holdSeconds = Long.parseLong(value);
+                    i++;
+                    break;
+                case "--timeout-s":
+                    config.timeoutSeconds = Long.parseLong(value);
+                    i++;
+                    break;
+                case "--text":
+                    config.text = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Неизвестный параметр: " + args[i]);
+            }
+        }
+        return config;
+    }
+}
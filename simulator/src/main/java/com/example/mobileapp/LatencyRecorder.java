@@ -0,0 +1,52 @@
+package com.example.mobileapp;
+
+import java.util.Arrays;
+
+// Потокобезопасный набор задержек в наносекундах с перцентилями для отчёта
+final class LatencyRecorder {
+    private final String name;
+    private long[] samples = new long[1024];
+    private int size;
+    private int failures;
+
+    LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    synchronized void add(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    synchronized void fail() {
+        failures++;
+    }
+
+    synchronized long[] snapshot() {
+        return Arrays.copyOf(samples, size);
+    }
+
+    synchronized String report() {
+        if (size == 0) {
+            return String.format("%-20s n=0 failed=%d", name, failures);
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return String.format("%-20s n=%-6d p50=%8.2f p90=%8.2f p99=%8.2f p99.9=%8.2f max=%8.2f ms failed=%d",
+                name, size,
+                toMs(percentile(sorted, 50)), toMs(percentile(sorted, 90)),
+                toMs(percentile(sorted, 99)), toMs(percentile(sorted, 99.9)),
+                toMs(sorted[sorted.length - 1]), failures);
+    }
+
+    private static long percentile(long[] sorted, double percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.mobileapp;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okio.ByteString;
+
+// Одно виртуальное устройство: повторяет MainActivity и WebRTCClient на уровне сигнализации.
+// Открывает WebSocket управления, по "касанию" отправляет UID и одновременно POST WHEP offer,
+// в бинарном протоколе проверяет паузу пересылки (MEDIA_PAUSE/MEDIA_PAUSED), затем применяет
+// команды адресации так же, как AudioMute
+final class SimulatedClient implements Runnable {
+    // Как PAUSE_ACK_TIMEOUT_MS в WebRTCClient
+    private static final long PAUSE_ACK_TIMEOUT_MS = 500;
+
+    // recvonly offer, как у MediaSession; кандидатов нет — сервер-заглушка ICE не проверяет
+    private static final String OFFER = "v=0\r\n"
+            + "o=- 4611731400430051336 2 IN IP4 127.0.0.1\r\n"
+            + "s=-\r\n"
+            + "t=0 0\r\n"
+            + "a=group:BUNDLE 0\r\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111\r\n"
+            + "c=IN IP4 0.0.0.0\r\n"
+            + "a=ice-ufrag:sim0\r\n"
+            + "a=ice-pwd:simsimsimsimsimsimsimsim\r\n"
+            + "a=setup:actpass\r\n"
+            + "a=mid:0\r\n"
+            + "a=recvonly\r\n"
+            + "a=rtpmap:111 opus/48000/2\r\n"
+            + "a=fmtp:111 minptime=10;useinbandfec=1\r\n";
+
+    private final int index;
+    private final FleetSimulator.Config config;
+    private final HttpClient http;
+    private final FleetSimulator.Metrics metrics;
+    private final CountDownLatch joined;
+    private final CountDownLatch finished;
+
+    private final ControlMessage message = new ControlMessage();
+    private final CountDownLatch identityReceived = new CountDownLatch(1);
+    private final CountDownLatch pauseAcked = new CountDownLatch(1);
+    private volatile long pauseAckedAtNanos;
+    private volatile boolean awaitingDeviceNumber;
+    private volatile boolean binary;
+    private volatile long deviceNumberAtNanos;
+    private int ownDevice = ControlProtocol.NO_DEVICE;
+    private int broadcastIndex;
+    private int audioState = ControlProtocol.AUDIO_UNCHANGED;
+
+    SimulatedClient(int index, FleetSimulator.Config config, HttpClient http,
+                    FleetSimulator.Metrics metrics, CountDownLatch joined, CountDownLatch finished) {
+        this.index = index;
+        this.config = config;
+        this.http = http;
+        this.metrics = metrics;
+        this.joined = joined;
+        this.finished = finished;
+    }
+
+    @Override
+    public void run() {
+        WebSocket socket = null;
+        String resource = null;
+        boolean countedJoin = false;
+        try {
+            long connectStart = System.nanoTime();
+            socket = http.newWebSocketBuilder()
+                    .subprotocols(ControlProtocol.SUBPROTOCOL_TEXT, ControlProtocol.SUBPROTOCOL_BINARY)
+                    .connectTimeout(Duration.ofSeconds(config.timeoutSeconds))
+                    .buildAsync(URI.create(config.controlUrl), new Listener())
+                    .get(config.timeoutSeconds, TimeUnit.SECONDS);
+            metrics.connect.add(System.nanoTime() - connectStart);
+            binary = ControlProtocol.isBinarySelected(socket.getSubprotocol());
+
+            // Касание пропуска: UID по управляющему каналу и offer по WHEP идут параллельно
+            long tap = System.nanoTime();
+            byte[] uid = uid(index);
+            awaitingDeviceNumber = true;
+            if (binary) {
+                socket.sendBinary(ByteBuffer.wrap(ControlProtocol.encodeUid(uid, 1).toByteArray()), true).join();
+            } else {
+                socket.sendText(ControlProtocol.encodeUidText(UidCodec.toHex(uid)), true).join();
+            }
+            HttpResponse<String> answer = http.send(HttpRequest.newBuilder(URI.create(config.whepUrl))
+                            .timeout(Duration.ofSeconds(config.timeoutSeconds))
+                            .header("Content-Type", "application/sdp")
+                            .header("Accept", "application/sdp")
+                            .POST(HttpRequest.BodyPublishers.ofString(OFFER))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            long answeredAt = System.nanoTime();
+            if (answer.statusCode() != 201) {
+                throw new IllegalStateException("WHEP " + answer.statusCode());
+            }
+            metrics.whep.add(answeredAt - tap);
+            resource = answer.headers().firstValue("Location")
+                    .map(location -> URI.create(config.whepUrl).resolve(location).toString())
+                    .orElse(null);
+            if (!identityReceived.await(config.timeoutSeconds, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("нет номера устройства");
+            }
+            metrics.deviceNumber.add(deviceNumberAtNanos - tap);
+            metrics.join.add(Math.max(answeredAt, deviceNumberAtNanos) - tap);
+            joined.countDown();
+            countedJoin = true;
+            if (binary) {
+                pauseAndResume(socket, resource);
+            }
+
+            // Дальше устройство только слушает рассылки до конца прогона
+            finished.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            metrics.join.fail();
+            metrics.recordError(e);
+        } finally {
+            if (!countedJoin) {
+                joined.countDown();
+            }
+            release(socket, resource);
+        }
+    }
+
+    // Устройство без звука просит сервер не пересылать поток своей подписки и сразу возобновляет
+    // пересылку — так же переключаются каналы в приложении
+    private void pauseAndResume(WebSocket socket, String resource) throws InterruptedException {
+        String path = resource != null ? URI.create(resource).getPath() : null;
+        long sent = System.nanoTime();
+        socket.sendBinary(ByteBuffer.wrap(ControlProtocol.encodeMediaPause(
+                ControlProtocol.OP_MEDIA_PAUSE, 2, path).toByteArray()), true).join();
+        if (pauseAcked.await(PAUSE_ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            metrics.pause.add(pauseAckedAtNanos - sent);
+        } else {
+            metrics.pause.fail();
+        }
+        socket.sendBinary(ByteBuffer.wrap(ControlProtocol.encodeMediaPause(
+                ControlProtocol.OP_MEDIA_RESUME, 3, path).toByteArray()), true).join();
+    }
+
+    private void release(WebSocket socket, String resource) {
+        try {
+            if (resource != null) {
+                http.send(HttpRequest.newBuilder(URI.create(resource)).DELETE()
+                        .timeout(Duration.ofSeconds(config.timeoutSeconds)).build(),
+                        HttpResponse.BodyHandlers.discarding());
+            }
+        } catch (Exception ignored) {
+            // сервер освободит ресурс по таймауту
+        }
+        if (socket != null) {
+            socket.sendClose(WebSocket.NORMAL_CLOSURE, "").exceptionally(t -> null);
+        }
+    }
+
+    // Уникальный 7-байтовый UID NFC-A для каждого виртуального пропуска
+    private static byte[] uid(int index) {
+        return new byte[]{0x04, 0x53, 0x49, 0x4D,
+                (byte) (index >>> 16), (byte) (index >>> 8), (byte) index};
+    }
+
+    private void onMessage(long receivedAt) {
+        switch (message.opcode) {
+            case ControlProtocol.OP_ASSIGN_DEVICE:
+                ownDevice = message.deviceId;
+                if (binary) {
+                    deviceNumberAtNanos = receivedAt;
+                    awaitingDeviceNumber = false;
+                    identityReceived.countDown();
+                }
+                break;
+            case ControlProtocol.OP_IDENTITY:
+                if (message.deviceId != ControlProtocol.NO_DEVICE) {
+                    ownDevice = message.deviceId;
+                }
+                message.text();
+                if (!binary) {
+                    // В текстовом протоколе ожидание номера заканчивается только с приходом ФИО
+                    deviceNumberAtNanos = receivedAt;
+                    awaitingDeviceNumber = false;
+                    identityReceived.countDown();
+                }
+                break;
+            case ControlProtocol.OP_MEDIA_PAUSED:
+                pauseAckedAtNanos = receivedAt;
+                pauseAcked.countDown();
+                break;
+            default:
+                int state = ControlProtocol.audioState(message, ownDevice);
+                if (state != ControlProtocol.AUDIO_UNCHANGED) {
+                    audioState = state;
+                    metrics.onBroadcastApplied(broadcastIndex++, System.nanoTime());
+                }
+                break;
+        }
+    }
+
+    // Колбэки JDK WebSocket приходят по одному; сообщения могут прийти частями
+    private class Listener implements WebSocket.Listener {
+        private final StringBuilder text = new StringBuilder();
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            long receivedAt = System.nanoTime();
+            text.append(data);
+            if (last) {
+                if (ControlProtocol.decodeText(text.toString(), awaitingDeviceNumber, message)) {
+                    onMessage(receivedAt);
+                }
+                text.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+            long receivedAt = System.nanoTime();
+            byte[] chunk = new byte[data.remaining()];
+            data.get(chunk);
+            bytes.write(chunk, 0, chunk.length);
+            if (last) {
+                if (ControlProtocol.decode(ByteString.of(bytes.toByteArray()), message)) {
+                    onMessage(receivedAt);
+                }
+                bytes.reset();
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}